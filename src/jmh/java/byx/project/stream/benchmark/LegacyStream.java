@@ -0,0 +1,86 @@
+package byx.project.stream.benchmark;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 引入专门的流节点之前的流的实现，作为NodeBenchmark的对照
+ * 所有节点都由create创建，每个节点由一个流对象和两个捕获参数的lambda组成，
+ * 空流是一个普通节点，遍历时通过接口分派调用first和remain
+ * @param <T> 元素类型
+ */
+interface LegacyStream<T> {
+    T first();
+
+    LegacyStream<T> remain();
+
+    static <T> LegacyStream<T> create(Supplier<T> firstSupplier, Supplier<LegacyStream<T>> remainSupplier) {
+        return new MemoStream<>(firstSupplier, remainSupplier);
+    }
+
+    LegacyStream<?> EMPTY = create(
+            () -> {throw new IllegalStateException("当前流已结束");},
+            () -> {throw new IllegalStateException("当前流已结束");}
+    );
+
+    @SuppressWarnings("unchecked")
+    static <T> LegacyStream<T> empty() {
+        return (LegacyStream<T>) EMPTY;
+    }
+
+    default boolean end() {
+        return this == EMPTY;
+    }
+
+    default <U> U collect(U initial, BiFunction<U, T, U> accumulator) {
+        U result = initial;
+        LegacyStream<T> s = this;
+        while (!s.end()) {
+            result = accumulator.apply(result, s.first());
+            s = s.remain();
+        }
+        return result;
+    }
+
+    default void forEach(Consumer<? super T> consumer) {
+        LegacyStream<T> s = this;
+        while (!s.end()) {
+            consumer.accept(s.first());
+            s = s.remain();
+        }
+    }
+
+    /**
+     * 按需求值并缓存计算结果的流节点
+     */
+    final class MemoStream<T> implements LegacyStream<T> {
+        private Supplier<T> firstSupplier;
+        private T first;
+        private Supplier<LegacyStream<T>> remainSupplier;
+        private LegacyStream<T> remain;
+
+        MemoStream(Supplier<T> firstSupplier, Supplier<LegacyStream<T>> remainSupplier) {
+            this.firstSupplier = firstSupplier;
+            this.remainSupplier = remainSupplier;
+        }
+
+        @Override
+        public T first() {
+            if (firstSupplier != null) {
+                first = firstSupplier.get();
+                firstSupplier = null;
+            }
+            return first;
+        }
+
+        @Override
+        public LegacyStream<T> remain() {
+            if (remainSupplier != null) {
+                remain = remainSupplier.get();
+                remainSupplier = null;
+            }
+            return remain;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package byx.project.stream.benchmark;
+
+import byx.project.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 专门的流节点与引入它们之前的一般节点的性能对比
+ * 以create开头的测试在LegacyStream上重新实现了fromGenerator、map、filter和limit，
+ * LegacyStream保留了原来的节点结构：每个节点由一个流对象和两个捕获参数的lambda组成
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NodeBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    private int size;
+
+    @Benchmark
+    public void generate(Blackhole bh) {
+        Stream.fromGenerator(0, n -> n + 1).limit(size).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void createGenerate(Blackhole bh) {
+        limit(generate(0, n -> n + 1), size).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void pipeline(Blackhole bh) {
+        Stream.fromGenerator(0, n -> n + 1)
+                .map(n -> n * 2)
+                .filter(n -> n % 3 == 0)
+                .limit(size)
+                .forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void createPipeline(Blackhole bh) {
+        LegacyStream<Integer> s = generate(0, n -> n + 1);
+        s = map(s, n -> n * 2);
+        s = filter(s, n -> n % 3 == 0);
+        limit(s, size).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public int collect() {
+        return Stream.fromGenerator(0, n -> n + 1)
+                .map(n -> n + 1)
+                .limit(size)
+                .collect(0, Integer::sum);
+    }
+
+    @Benchmark
+    public int createCollect() {
+        return limit(map(generate(0, n -> n + 1), n -> n + 1), size).collect(0, Integer::sum);
+    }
+
+    private static <T> LegacyStream<T> generate(T initial, UnaryOperator<T> generator) {
+        return LegacyStream.create(() -> initial, () -> generate(generator.apply(initial), generator));
+    }
+
+    private static <T, U> LegacyStream<U> map(LegacyStream<T> s, Function<T, U> mapper) {
+        return s.end()
+                ? LegacyStream.empty()
+                : LegacyStream.create(() -> mapper.apply(s.first()), () -> map(s.remain(), mapper));
+    }
+
+    private static <T> LegacyStream<T> filter(LegacyStream<T> s, Predicate<T> predicate) {
+        LegacyStream<T> cur = s;
+        while (!cur.end()) {
+            T e = cur.first();
+            if (predicate.test(e)) {
+                LegacyStream<T> matched = cur;
+                return LegacyStream.create(() -> e, () -> filter(matched.remain(), predicate));
+            }
+            cur = cur.remain();
+        }
+        return LegacyStream.empty();
+    }
+
+    private static <T> LegacyStream<T> limit(LegacyStream<T> s, int n) {
+        return n <= 0 || s.end()
+                ? LegacyStream.empty()
+                : LegacyStream.create(s::first, () -> n == 1 ? LegacyStream.empty() : limit(s.remain(), n - 1));
+    }
+}
@@ -0,0 +1,112 @@
+package byx.project.stream.benchmark;
+
+import byx.project.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流的中间操作的性能测试，每个测试都遍历操作后的流中的所有元素
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OperatorBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    private int size;
+
+    private Integer[] arr;
+
+    @Setup
+    public void setup() {
+        arr = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            arr[i] = i;
+        }
+    }
+
+    @Benchmark
+    public void map(Blackhole bh) {
+        Stream.of(arr).map(n -> n + 1).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void filter(Blackhole bh) {
+        Stream.of(arr).filter(n -> n % 2 == 0).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void flatMap(Blackhole bh) {
+        Stream.of(arr).flatMap(n -> Stream.of(n, n)).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void concat(Blackhole bh) {
+        Stream.of(arr).concat(Stream.of(arr)).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void interleave(Blackhole bh) {
+        Stream.of(arr).interleave(Stream.of(arr)).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void limit(Blackhole bh) {
+        Stream.of(arr).limit(size / 2).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void skip(Blackhole bh) {
+        Stream.of(arr).skip(size / 2).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public int mapFilterCount() {
+        return Stream.of(arr).map(n -> n + 1).filter(n -> n % 3 == 0).count();
+    }
+
+    @Benchmark
+    public int fusedMapFilterCount() {
+        return Stream.of(arr).fused().map(n -> n + 1).filter(n -> n % 3 == 0).count();
+    }
+
+    @Benchmark
+    public void baselineMap(Blackhole bh) {
+        Arrays.stream(arr).map(n -> n + 1).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineFilter(Blackhole bh) {
+        Arrays.stream(arr).filter(n -> n % 2 == 0).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineFlatMap(Blackhole bh) {
+        Arrays.stream(arr).flatMap(n -> java.util.stream.Stream.of(n, n)).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineConcat(Blackhole bh) {
+        java.util.stream.Stream.concat(Arrays.stream(arr), Arrays.stream(arr)).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineLimit(Blackhole bh) {
+        Arrays.stream(arr).limit(size / 2).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineSkip(Blackhole bh) {
+        Arrays.stream(arr).skip(size / 2).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public long baselineMapFilterCount() {
+        return Arrays.stream(arr).map(n -> n + 1).filter(n -> n % 3 == 0).count();
+    }
+}
@@ -0,0 +1,86 @@
+package byx.project.stream.benchmark;
+
+import byx.project.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流的生成方式的性能测试，每个测试都遍历生成的流中的所有元素
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SourceBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    private int size;
+
+    private Integer[] arr;
+    private List<Integer> list;
+
+    @Setup
+    public void setup() {
+        arr = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            arr[i] = i;
+        }
+        list = new ArrayList<>(Arrays.asList(arr));
+    }
+
+    @Benchmark
+    public void of(Blackhole bh) {
+        Stream.of(arr).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void fromArray(Blackhole bh) {
+        Stream.fromArray(0, arr).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void fromIterator(Blackhole bh) {
+        Stream.fromIterator(list.iterator()).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void fromCollection(Blackhole bh) {
+        Stream.fromCollection(list).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void fromGenerator(Blackhole bh) {
+        Stream.fromGenerator(0, n -> n + 1).limit(size).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void fromSupplier(Blackhole bh) {
+        Stream.fromSupplier(() -> 1).limit(size).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineOf(Blackhole bh) {
+        java.util.stream.Stream.of(arr).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineFromCollection(Blackhole bh) {
+        list.stream().forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineFromGenerator(Blackhole bh) {
+        java.util.stream.Stream.iterate(0, n -> n + 1).limit(size).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void baselineFromSupplier(Blackhole bh) {
+        java.util.stream.Stream.generate(() -> 1).limit(size).forEach(bh::consume);
+    }
+}
@@ -0,0 +1,97 @@
+package byx.project.stream.benchmark;
+
+import byx.project.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 流的聚合操作的性能测试
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TerminalBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    private int size;
+
+    private Integer[] arr;
+
+    @Setup
+    public void setup() {
+        arr = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            arr[i] = i;
+        }
+    }
+
+    @Benchmark
+    public long collect() {
+        return Stream.of(arr).collect(0L, (sum, n) -> sum + n);
+    }
+
+    @Benchmark
+    public List<Integer> toList() {
+        return Stream.of(arr).toList();
+    }
+
+    @Benchmark
+    public Set<Integer> toSet() {
+        return Stream.of(arr).toSet();
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> toMap() {
+        return Stream.of(arr).toMap(Function.identity(), n -> n);
+    }
+
+    @Benchmark
+    public int count() {
+        return Stream.of(arr).count();
+    }
+
+    @Benchmark
+    public void forEach(Blackhole bh) {
+        Stream.of(arr).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public long baselineCollect() {
+        return Arrays.stream(arr).reduce(0L, (sum, n) -> sum + n, Long::sum);
+    }
+
+    @Benchmark
+    public List<Integer> baselineToList() {
+        return Arrays.stream(arr).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Set<Integer> baselineToSet() {
+        return Arrays.stream(arr).collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> baselineToMap() {
+        return Arrays.stream(arr).collect(Collectors.toMap(Function.identity(), n -> n));
+    }
+
+    @Benchmark
+    public long baselineCount() {
+        return Arrays.stream(arr).count();
+    }
+
+    @Benchmark
+    public void baselineForEach(Blackhole bh) {
+        Arrays.stream(arr).forEach(bh::consume);
+    }
+}
@@ -0,0 +1,144 @@
+package byx.project.stream;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * 异步映射流中的元素，同时进行的映射不超过parallelism个
+ * 每次取出一个结果前，先从源流中读取元素启动映射，直到进行中的映射达到parallelism个
+ * 有序模式按源流的顺序返回结果，无序模式按完成的顺序返回结果
+ * 调用close、映射失败或迭代器不再被引用时，尚未开始的映射会被取消
+ * @param <T> 源流的元素类型
+ * @param <U> 映射后的元素类型
+ */
+final class AsyncMapper<T, U> implements Iterator<U> {
+    private final Iterator<T> source;
+    private final Function<T, CompletableFuture<U>> mapper;
+    private final int parallelism;
+    private final boolean ordered;
+    private final ArrayDeque<CompletableFuture<U>> inflight;
+    private final BlockingQueue<CompletableFuture<U>> completed;
+    private volatile boolean closed;
+
+    private AsyncMapper(Stream<T> source, Function<T, CompletableFuture<U>> mapper, int parallelism, boolean ordered) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism必须大于0");
+        }
+        this.source = source.iterator();
+        this.mapper = mapper;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+        this.inflight = new ArrayDeque<>(parallelism);
+        this.completed = ordered ? null : new LinkedBlockingQueue<>();
+        // 清理操作只引用进行中的映射，不会阻止当前对象被回收
+        ArrayDeque<CompletableFuture<U>> futures = inflight;
+        Threads.CLEANER.register(this, () -> cancelAll(futures));
+    }
+
+    /**
+     * 异步映射流中的元素
+     * 第一次访问返回的流时才启动映射，关闭返回的流时取消尚未开始的映射
+     * @param source 源流
+     * @param mapper 异步映射器
+     * @param parallelism 最多同时进行的映射个数
+     * @param ordered 是否按源流的顺序返回结果
+     * @param <T> 源流的元素类型
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    static <T, U> Stream<U> map(Stream<T> source, Function<T, CompletableFuture<U>> mapper, int parallelism, boolean ordered) {
+        AsyncMapper<T, U> asyncMapper = new AsyncMapper<>(source, mapper, parallelism, ordered);
+        return new DeferredStream<>(() -> Cons.fromIterator(asyncMapper), asyncMapper::close);
+    }
+
+    /**
+     * 在后台线程中映射流中的元素
+     * @param source 源流
+     * @param mapper 映射器
+     * @param parallelism 最多同时进行的映射个数
+     * @param ordered 是否按源流的顺序返回结果
+     * @param <T> 源流的元素类型
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    static <T, U> Stream<U> mapParallel(Stream<T> source, Function<T, U> mapper, int parallelism, boolean ordered) {
+        return map(source, e -> CompletableFuture.supplyAsync(() -> mapper.apply(e), Threads.EXECUTOR), parallelism, ordered);
+    }
+
+    private static <U> void cancelAll(ArrayDeque<CompletableFuture<U>> futures) {
+        // 已经开始执行的映射会继续执行完，尚未开始的映射不会再执行
+        for (CompletableFuture<U> f : futures) {
+            f.cancel(false);
+        }
+    }
+
+    /**
+     * 取消尚未开始的映射，之后不能再读取尚未读取的结果
+     */
+    void close() {
+        closed = true;
+        cancelAll(inflight);
+    }
+
+    /**
+     * 启动映射，直到进行中的映射达到parallelism个或源流结束
+     */
+    private void fill() {
+        while (inflight.size() < parallelism && source.hasNext()) {
+            CompletableFuture<U> f = mapper.apply(source.next());
+            inflight.add(f);
+            if (!ordered) {
+                f.whenComplete((r, e) -> completed.add(f));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            throw new IllegalStateException("流已关闭");
+        }
+        fill();
+        return !inflight.isEmpty();
+    }
+
+    @Override
+    public U next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("当前流已结束");
+        }
+        CompletableFuture<U> f;
+        if (ordered) {
+            f = inflight.poll();
+        } else {
+            try {
+                f = completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll(inflight);
+                throw new IllegalStateException("等待映射结果时被中断", e);
+            }
+            inflight.remove(f);
+        }
+        try {
+            return f.join();
+        } catch (CompletionException | CancellationException e) {
+            cancelAll(inflight);
+            // 映射器抛出的异常在消费者线程中重新抛出
+            if (e instanceof CompletionException && e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e instanceof CompletionException && e.getCause() instanceof Error err) {
+                throw err;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package byx.project.stream;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * 把一个源流同时分发给多个分支，源流只遍历一次
+ * 每个分支在自己的线程中运行，需要新元素的分支在锁外从源流读取元素，放入所有分支共享的环形缓冲区，
+ * 最快的分支领先最慢的分支达到缓冲区大小时等待，因此缓冲区中的元素个数有上限
+ * 分支结束（正常返回或抛出异常）后不再参与比较，不会阻塞其他分支
+ * @param <T> 元素类型
+ */
+final class Broadcaster<T> {
+    private final Iterator<T> source;
+    private final Object[] buffer;
+    private final long[] positions;
+    private long produced;
+    private boolean end;
+    private boolean producing;
+    private Throwable failure;
+    private int waiting;
+
+    private Broadcaster(Stream<T> source, int bufferSize, int branches) {
+        // 使用游标读取源流，调用者持有源流的头部时已读取的元素也不会被保留
+        this.source = source.cursor();
+        this.buffer = new Object[bufferSize];
+        this.positions = new long[branches];
+    }
+
+    /**
+     * 把源流分发给多个处理函数
+     * @param source 源流
+     * @param bufferSize 缓冲区大小
+     * @param pipelines 处理函数
+     * @param <T> 元素类型
+     * @param <R> 结果类型
+     * @return 每个处理函数的结果
+     */
+    static <T, R> List<R> broadcast(Stream<T> source, int bufferSize,
+                                    List<? extends Function<? super Stream<T>, ? extends R>> pipelines) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize必须大于0");
+        }
+        Broadcaster<T> broadcaster = new Broadcaster<>(source, bufferSize, pipelines.size());
+        List<CompletableFuture<R>> futures = new ArrayList<>(pipelines.size());
+        for (int i = 0; i < pipelines.size(); i++) {
+            Function<? super Stream<T>, ? extends R> pipeline = pipelines.get(i);
+            int branch = i;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    // 在分支自己的线程中创建流，创建时等待第一个元素不会阻塞其他分支
+                    return pipeline.apply(oneShot(broadcaster.new Branch(branch)));
+                } finally {
+                    broadcaster.close(branch);
+                }
+            }, Threads.EXECUTOR));
+        }
+        // 等待所有分支结束，其中一个分支失败时其他分支仍然会运行到结束
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException ignored) {
+            // 下面逐个检查每个分支的结果
+        }
+        List<R> results = new ArrayList<>(futures.size());
+        Throwable failure = null;
+        for (CompletableFuture<R> f : futures) {
+            try {
+                results.add(f.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (failure == null) {
+                    failure = cause;
+                } else if (cause != failure) {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            // 重新抛出第一个失败的分支中的异常，其他分支的异常作为被抑制的异常
+            if (failure instanceof RuntimeException re) {
+                throw re;
+            }
+            if (failure instanceof Error err) {
+                throw err;
+            }
+            throw new CompletionException(failure);
+        }
+        return results;
+    }
+
+    /**
+     * 生成只能遍历一次的流
+     * 每个节点只保存自己的元素，不缓存剩余的流，处理函数持有流的头部也不会保留已读取的元素，
+     * 因此每个分支占用的内存不随源流的长度增长
+     */
+    private static <T> Stream<T> oneShot(Iterator<T> iterator) {
+        if (!iterator.hasNext()) {
+            return Stream.empty();
+        }
+        T e = iterator.next();
+        return Stream.create(() -> e, () -> oneShot(iterator), false);
+    }
+
+    /**
+     * 仍在运行的分支中最慢的位置
+     */
+    private long slowest() {
+        long min = Long.MAX_VALUE;
+        for (long p : positions) {
+            min = Math.min(min, p);
+        }
+        return min;
+    }
+
+    /**
+     * 分支结束后不再参与比较
+     */
+    private synchronized void close(int branch) {
+        positions[branch] = Long.MAX_VALUE;
+        if (waiting > 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * 等待第branch个分支可以读取下一个元素
+     * 需要读取源流时由当前分支在锁外读取，同一时刻只有一个分支读取源流，
+     * 其他分支在此期间仍然可以读取缓冲区中已有的元素
+     * @return 是否还有下一个元素
+     */
+    private boolean await(int branch) {
+        while (true) {
+            synchronized (this) {
+                while (true) {
+                    long p = positions[branch];
+                    if (p < produced) {
+                        return true;
+                    }
+                    if (failure != null) {
+                        if (failure instanceof RuntimeException re) {
+                            throw re;
+                        }
+                        if (failure instanceof Error err) {
+                            throw err;
+                        }
+                        throw new IllegalStateException(failure);
+                    }
+                    if (end) {
+                        return false;
+                    }
+                    if (!producing && produced - slowest() < buffer.length) {
+                        producing = true;
+                        break;
+                    }
+                    // 其他分支正在读取源流，或者领先最慢的分支达到缓冲区大小时等待
+                    waiting++;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("等待其他分支时被中断", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            }
+            pull();
+        }
+    }
+
+    /**
+     * 在锁外从源流读取一个元素，然后放入缓冲区
+     * 读取之前已经确认缓冲区有空位，分支的位置只会前进，因此读取期间空位不会被占用
+     */
+    private void pull() {
+        T e = null;
+        boolean hasNext = false;
+        Throwable t = null;
+        try {
+            hasNext = source.hasNext();
+            if (hasNext) {
+                e = source.next();
+            }
+        } catch (Throwable ex) {
+            t = ex;
+        }
+        synchronized (this) {
+            if (t != null) {
+                failure = t;
+            } else if (hasNext) {
+                buffer[(int) (produced % buffer.length)] = e;
+                produced++;
+            } else {
+                end = true;
+            }
+            producing = false;
+            if (waiting > 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 读取第branch个分支的下一个元素
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized T take(int branch) {
+        long p = positions[branch]++;
+        T e = (T) buffer[(int) (p % buffer.length)];
+        // 最慢的分支前进之后，等待的分支可能可以继续读取
+        if (waiting > 0) {
+            notifyAll();
+        }
+        return e;
+    }
+
+    /**
+     * 一个分支读取元素的迭代器
+     */
+    private final class Branch implements Iterator<T> {
+        private final int index;
+
+        Branch(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return await(index);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("当前流已结束");
+            }
+            return take(index);
+        }
+    }
+}
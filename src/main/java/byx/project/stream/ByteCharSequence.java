@@ -0,0 +1,36 @@
+package byx.project.stream;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接引用字节缓冲区内容的字符序列，每个字节按ISO-8859-1解释成一个字符
+ * 读取ASCII文本时与解码结果相同，不会复制字节
+ */
+final class ByteCharSequence implements CharSequence {
+    private final ByteBuffer bytes;
+
+    ByteCharSequence(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new ByteCharSequence(bytes.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        return StandardCharsets.ISO_8859_1.decode(bytes.duplicate()).toString();
+    }
+}
@@ -0,0 +1,483 @@
+package byx.project.stream;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 由数组中连续的一段元素和剩余元素组成的流组成的流节点
+ * 聚合操作可以直接遍历整段数组，map和filter每次处理一批元素，map得到的每个元素在第一次被访问时才计算
+ * @param <T> 元素类型
+ */
+final class ChunkStream<T> implements Stream<T> {
+    /**
+     * map和filter每批处理的元素个数，同时也是从迭代器读取元素时每段的最大长度
+     */
+    static final int CHUNK_SIZE = 256;
+
+    /**
+     * 所有流节点都具有的特征值
+     */
+    private static final int BASE_CHARACTERISTICS = Spliterator.ORDERED | Spliterator.IMMUTABLE;
+
+    private final Supplier<Object[]> elements;
+    final int from;
+    final int to;
+    private final Supplier<Stream<T>> tail;
+    private final long size;
+    private final int characteristics;
+    private final IntFunction<Stream<T>> skipper;
+    private final boolean memoized;
+
+    /**
+     * @param size 流中元素个数，包含SIZED特征值时为确切值，否则为估计值，无法估计时为Long.MAX_VALUE
+     * @param skipper 跳过k个元素（k不小于当前段的长度）的快捷方式，为null时只能逐段跳过
+     */
+    private ChunkStream(Supplier<Object[]> elements, int from, int to, Supplier<Stream<T>> tail,
+                        long size, int characteristics, IntFunction<Stream<T>> skipper, boolean memoized) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.tail = tail;
+        this.size = size;
+        this.characteristics = characteristics;
+        this.skipper = skipper;
+        this.memoized = memoized;
+    }
+
+    /**
+     * 创建只包含数组中一段元素的流节点，要求from < to
+     * @param elements 元素数组
+     * @param from 起始索引（包含）
+     * @param to 结束索引（不包含）
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> ChunkStream<T> create(Object[] elements, int from, int to) {
+        return create(elements, from, to, 0);
+    }
+
+    /**
+     * 创建只包含数组中一段元素的流节点，要求from < to
+     * @param elements 元素数组
+     * @param from 起始索引（包含）
+     * @param to 结束索引（不包含）
+     * @param characteristics 额外的特征值，只能是DISTINCT和SORTED（自然顺序）
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> ChunkStream<T> create(Object[] elements, int from, int to, int characteristics) {
+        return new ChunkStream<>(Lazy.of(elements), from, to, Stream::empty, to - from,
+                BASE_CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED | characteristics, null, true);
+    }
+
+    /**
+     * 创建流节点，要求from < to
+     * @param elements 元素数组
+     * @param from 起始索引（包含）
+     * @param to 结束索引（不包含）
+     * @param tail 剩余元素组成的流的工厂
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> ChunkStream<T> create(Object[] elements, int from, int to, Supplier<Stream<T>> tail) {
+        return create(Lazy.of(elements), from, to, tail, Long.MAX_VALUE, BASE_CHARACTERISTICS, null, true);
+    }
+
+    /**
+     * 创建流节点，每次访问当前段时都从elements获取数组，要求from < to
+     * @param elements 数组的工厂，每次调用都要返回相同的元素
+     * @param from 起始索引（包含）
+     * @param to 结束索引（不包含）
+     * @param tail 剩余元素组成的流的工厂
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> ChunkStream<T> create(Supplier<Object[]> elements, int from, int to, Supplier<Stream<T>> tail) {
+        return create(elements, from, to, tail, Long.MAX_VALUE, BASE_CHARACTERISTICS, null, true);
+    }
+
+    /**
+     * 创建元素个数已知的流节点，要求from < to
+     * @param elements 元素数组
+     * @param from 起始索引（包含）
+     * @param to 结束索引（不包含）
+     * @param tail 剩余元素组成的流的工厂
+     * @param size 流中元素个数，包括当前段中的元素
+     * @param characteristics 额外的特征值，只能是DISTINCT和SORTED（自然顺序）
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> ChunkStream<T> create(Object[] elements, int from, int to, Supplier<Stream<T>> tail,
+                                     long size, int characteristics) {
+        return create(Lazy.of(elements), from, to, tail, size,
+                BASE_CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED | characteristics, null, true);
+    }
+
+    private static <T> ChunkStream<T> create(Supplier<Object[]> elements, int from, int to, Supplier<Stream<T>> tail,
+                                             long size, int characteristics, IntFunction<Stream<T>> skipper, boolean memoized) {
+        return new ChunkStream<>(elements, from, to, memoized ? new Lazy<>(tail) : tail, size, characteristics, skipper, memoized);
+    }
+
+    /**
+     * 从迭代器读取元素生成流节点，要求迭代器还有元素
+     * 第一段只包含一个元素，第一次访问时才读取，之后访问到下一段时才读取下一段，每段的长度倍增到CHUNK_SIZE，
+     * 因此预先读取的元素个数不超过已经访问的元素个数
+     * 迭代器只能读取一次，不缓存计算结果的流也共享已经读取的段，重复遍历时得到相同的元素
+     * @param iterator 迭代器
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> ChunkStream<T> fromIterator(Iterator<T> iterator) {
+        Lazy<Object[]> head = new Lazy<>(() -> new Object[]{iterator.next()});
+        return create(head, 0, 1, shared(() -> {
+            // 读取下一段之前先读取第一个元素，保持迭代器的顺序
+            head.get();
+            return readChunk(iterator, 2);
+        }));
+    }
+
+    private static <T> Stream<T> readChunk(Iterator<T> iterator, int length) {
+        Object[] arr = new Object[length];
+        int n = 0;
+        while (n < length && iterator.hasNext()) {
+            arr[n++] = iterator.next();
+        }
+        int next = Math.min(length * 2, CHUNK_SIZE);
+        return n == 0
+                ? Stream.empty()
+                : create(arr, 0, n, shared(() -> readChunk(iterator, next)));
+    }
+
+    /**
+     * 缓存计算结果和不缓存计算结果的流共用同一个计算结果的工厂
+     */
+    private static <T> Supplier<Stream<T>> shared(Supplier<Stream<T>> tail) {
+        Lazy<Stream<T>> lazy = new Lazy<>(tail);
+        return new Continuation<>(lazy, lazy);
+    }
+
+    /**
+     * 剩余元素是否都在当前段内
+     */
+    private boolean last() {
+        return sized() && size == to - from;
+    }
+
+    /**
+     * 流中元素个数是否已知
+     */
+    private boolean sized() {
+        return (characteristics & Spliterator.SIZED) != 0;
+    }
+
+    /**
+     * 从估计的元素个数中减去k
+     */
+    private static long minus(long size, long k) {
+        return size == Long.MAX_VALUE ? size : size - k;
+    }
+
+    /**
+     * 获取当前段所在的数组中下标为i的元素
+     * @param i 下标，在[from, to)范围内
+     * @return 元素
+     */
+    @SuppressWarnings("unchecked")
+    T element(int i) {
+        return (T) element(elements, i);
+    }
+
+    private static Object element(Supplier<Object[]> elements, int i) {
+        return elements instanceof Mapped m ? m.get(i) : elements.get()[i];
+    }
+
+    /**
+     * 当前段之后的元素组成的流
+     */
+    Stream<T> rest() {
+        return tail.get();
+    }
+
+    /**
+     * 跳过当前段内的前k个元素
+     * @param k 跳过的个数，不超过当前段的长度
+     * @return 流
+     */
+    Stream<T> drop(int k) {
+        return from + k < to
+                ? new ChunkStream<>(elements, from + k, to, tail, minus(size, k), characteristics, skipperAfter(k), memoized)
+                : rest();
+    }
+
+    private IntFunction<Stream<T>> skipperAfter(int k) {
+        return skipper == null ? null : n -> skipper.apply(n + k);
+    }
+
+    /**
+     * 尽可能不逐段遍历地跳过k个元素
+     * @param k 跳过的个数
+     * @return 流，无法直接跳过时返回null
+     */
+    Stream<T> jump(int k) {
+        if (k < to - from) {
+            return drop(k);
+        }
+        if (sized() && k >= size) {
+            return Stream.empty();
+        }
+        return skipper == null ? null : skipper.apply(k);
+    }
+
+    @Override
+    public T first() {
+        return element(from);
+    }
+
+    @Override
+    public Stream<T> remain() {
+        return drop(1);
+    }
+
+    @Override
+    public boolean memoized() {
+        return memoized;
+    }
+
+    @Override
+    public Stream<T> unmemoized() {
+        if (!memoized) {
+            return this;
+        }
+        Supplier<Stream<T>> rs = Continuation.unmemoized(tail instanceof Lazy<Stream<T>> lazy ? lazy.unevaluated() : tail);
+        IntFunction<Stream<T>> sk = skipper == null ? null : k -> skipper.apply(k).unmemoized();
+        return new ChunkStream<>(elements, from, to, () -> rs.get().unmemoized(), size, characteristics, sk, false);
+    }
+
+    /**
+     * 不缓存计算结果的当前节点
+     */
+    private ChunkStream<T> plain() {
+        return (ChunkStream<T>) unmemoized();
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public long estimateSize() {
+        return size;
+    }
+
+    /**
+     * 当流中剩余的元素都在当前段内时，获取可以按范围拆分的Spliterator
+     * @return Spliterator，剩余元素不都在当前段内时返回null
+     */
+    Spliterator<T> arraySpliterator() {
+        if (!last()) {
+            return null;
+        }
+        // 并行执行前先计算当前段内尚未计算的元素
+        for (int i = from; i < to; i++) {
+            element(i);
+        }
+        return Spliterators.spliterator(elements.get(), from, to, characteristics);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return last() ? arraySpliterator() : Stream.super.spliterator();
+    }
+
+    /**
+     * 对当前段内的元素进行聚合
+     */
+    <U> U collectChunk(U initial, BiFunction<U, T, U> accumulator) {
+        U result = initial;
+        for (int i = from; i < to; i++) {
+            result = accumulator.apply(result, element(i));
+        }
+        return result;
+    }
+
+    /**
+     * 遍历当前段内的元素
+     */
+    void forEachInChunk(Consumer<? super T> consumer) {
+        for (int i = from; i < to; i++) {
+            consumer.accept(element(i));
+        }
+    }
+
+    /**
+     * 将当前段内的元素依次传递给sink
+     * @param sink sink
+     * @return sink是否在中途取消
+     */
+    boolean pushChunk(Sink<T> sink) {
+        for (int i = from; i < to; i++) {
+            sink.accept(element(i));
+            if (sink.cancellationRequested()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 过滤当前段内的下一批元素
+     * @param predicate 断言
+     * @return 由满足条件的元素开头的流，没有满足条件的元素时返回null
+     */
+    Stream<T> filterChunk(Predicate<T> predicate) {
+        int end = to - from > CHUNK_SIZE ? from + CHUNK_SIZE : to;
+        Object[] result = new Object[end - from];
+        int cnt = 0;
+        for (int i = from; i < end; i++) {
+            T e = element(i);
+            if (predicate.test(e)) {
+                result[cnt++] = e;
+            }
+        }
+        if (cnt == 0) {
+            return null;
+        }
+        int n = end - from;
+        return create(Lazy.of(result), 0, cnt, new Continuation<>(
+                        () -> drop(n).filter(predicate), () -> plain().drop(n).filter(predicate)), minus(size, n - cnt),
+                characteristics & ~(Spliterator.SIZED | Spliterator.SUBSIZED), null, true);
+    }
+
+    @Override
+    public <U> Stream<U> map(Function<T, U> mapper) {
+        if (!memoized) {
+            return Stream.super.map(mapper);
+        }
+        int n = Math.min(to - from, CHUNK_SIZE);
+        Mapped mapped = new Mapped(elements, from, n, mapper);
+        // 元素个数已知时可以先跳过源流中的元素再映射
+        IntFunction<Stream<U>> sk = sized() ? k -> skip(k).map(mapper) : null;
+        return create(mapped, 0, n, new Continuation<>(
+                        () -> drop(n).map(mapper), () -> plain().drop(n).map(mapper)), size,
+                characteristics & ~(Spliterator.DISTINCT | Spliterator.SORTED), sk, true);
+    }
+
+    @Override
+    public Stream<T> limit(int n) {
+        if (n <= 0) {
+            return Stream.empty();
+        }
+        int len = to - from;
+        if (n <= len) {
+            return new ChunkStream<>(elements, from, from + n, Stream::empty, n,
+                    characteristics | Spliterator.SIZED | Spliterator.SUBSIZED, null, memoized);
+        }
+        IntFunction<Stream<T>> sk = sized() || skipper != null ? k -> skip(k).limit(n - k) : null;
+        return create(elements, from, to, new Continuation<>(
+                        () -> rest().limit(n - len), () -> plain().rest().limit(n - len)),
+                Math.min(size, n), characteristics, sk, memoized);
+    }
+
+    @Override
+    public Stream<T> skip(int n) {
+        if (n <= 0) {
+            return this;
+        }
+        Stream<T> s = jump(n);
+        return s != null ? s : Stream.super.skip(n);
+    }
+
+    /**
+     * 在当前流之后连接另一个流
+     * @param s 要连接的流的工厂
+     * @return 流
+     */
+    Stream<T> append(Supplier<Stream<T>> s) {
+        return create(elements, from, to, new Continuation<>(
+                        () -> Stream.concat(rest(), s),
+                        () -> Stream.concat(plain().rest(), Continuation.unmemoized(s))),
+                Long.MAX_VALUE,
+                characteristics & ~(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT | Spliterator.SORTED),
+                null, memoized);
+    }
+
+    /**
+     * 不计算流中的元素就能得到的确切元素个数，其他类型的流获取特征值时可能需要计算第一个元素
+     * @return 元素个数，未知时返回-1
+     */
+    private static long knownSize(Stream<?> s) {
+        if (s == Stream.EMPTY) {
+            return 0;
+        }
+        return s instanceof ChunkStream<?> c ? c.exactSize() : -1;
+    }
+
+    /**
+     * 在当前流之后连接另一个流，两个流的元素个数都已知时，连接后的流的元素个数也已知
+     * @param s 要连接的流
+     * @return 流
+     */
+    Stream<T> append(Stream<T> s) {
+        long otherSize = knownSize(s);
+        if (!sized() || otherSize < 0) {
+            return append(() -> s);
+        }
+        IntFunction<Stream<T>> sk = k -> k < size ? Stream.concat(skip(k), s) : s.skip((int) (k - size));
+        return create(elements, from, to, new Continuation<>(
+                        () -> Stream.concat(rest(), s), () -> Stream.concat(plain().rest(), s.unmemoized())),
+                size + otherSize,
+                characteristics & ~(Spliterator.DISTINCT | Spliterator.SORTED), sk, memoized);
+    }
+
+    /**
+     * map操作得到的一段元素，每个元素在第一次被访问时才计算，被跳过的元素不会计算
+     * get返回的数组中尚未计算的位置为NONE，只能通过get(i)访问元素
+     */
+    private static final class Mapped implements Supplier<Object[]> {
+        private static final Object NONE = new Object();
+
+        private Supplier<Object[]> source;
+        private final int offset;
+        private Function<Object, Object> mapper;
+        private final Object[] result;
+        private int remaining;
+
+        @SuppressWarnings("unchecked")
+        Mapped(Supplier<Object[]> source, int offset, int n, Function<?, ?> mapper) {
+            this.source = source;
+            this.offset = offset;
+            this.mapper = (Function<Object, Object>) mapper;
+            this.result = new Object[n];
+            this.remaining = n;
+            Arrays.fill(result, NONE);
+        }
+
+        Object get(int i) {
+            Object e = result[i];
+            if (e == NONE) {
+                e = mapper.apply(element(source, offset + i));
+                result[i] = e;
+                // 所有元素都计算完成后释放源数组和映射器
+                if (--remaining == 0) {
+                    source = null;
+                    mapper = null;
+                }
+            }
+            return e;
+        }
+
+        @Override
+        public Object[] get() {
+            return result;
+        }
+    }
+}
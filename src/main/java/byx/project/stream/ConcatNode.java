@@ -0,0 +1,39 @@
+package byx.project.stream;
+
+import java.util.function.Supplier;
+
+/**
+ * concat操作生成的流节点
+ * @param <T> 元素类型
+ */
+final class ConcatNode<T> extends LazyNode<T> {
+    private Stream<T> s1;
+    private Supplier<Stream<T>> s2;
+
+    ConcatNode(Stream<T> s1, Supplier<Stream<T>> s2, boolean memoized) {
+        super(memoized);
+        this.s1 = s1;
+        this.s2 = s2;
+    }
+
+    @Override
+    T computeFirst() {
+        return s1.first();
+    }
+
+    @Override
+    Stream<T> computeRemain() {
+        return Stream.concat(s1.remain(), s2);
+    }
+
+    @Override
+    LazyNode<T> unmemoizedCopy() {
+        return new ConcatNode<>(s1.unmemoized(), Continuation.unmemoized(s2), false);
+    }
+
+    @Override
+    void release() {
+        s1 = null;
+        s2 = null;
+    }
+}
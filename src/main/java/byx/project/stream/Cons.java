@@ -0,0 +1,51 @@
+package byx.project.stream;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * 由第一个元素的工厂和剩余元素组成的流的工厂构成的流节点
+ * @param <T> 元素类型
+ */
+final class Cons<T> extends LazyNode<T> {
+    private Supplier<T> firstSupplier;
+    private Supplier<Stream<T>> remainSupplier;
+
+    Cons(Supplier<T> firstSupplier, Supplier<Stream<T>> remainSupplier, boolean memoized) {
+        super(memoized);
+        this.firstSupplier = firstSupplier;
+        this.remainSupplier = remainSupplier;
+    }
+
+    /**
+     * 逐个从迭代器读取元素生成流，不会预先读取一段元素
+     * 适用于每个元素都可能需要等待的迭代器
+     * @param iterator 迭代器
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> Stream<T> fromIterator(Iterator<T> iterator) {
+        if (!iterator.hasNext()) {
+            return Stream.empty();
+        }
+        T e = iterator.next();
+        return new Cons<>(() -> e, () -> fromIterator(iterator), true);
+    }
+
+    @Override
+    T computeFirst() {
+        return firstSupplier.get();
+    }
+
+    @Override
+    Stream<T> computeRemain() {
+        return remainSupplier.get();
+    }
+
+    @Override
+    void release() {
+        // 释放工厂方法捕获的对象
+        firstSupplier = null;
+        remainSupplier = null;
+    }
+}
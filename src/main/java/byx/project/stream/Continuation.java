@@ -0,0 +1,27 @@
+package byx.project.stream;
+
+import java.util.function.Supplier;
+
+/**
+ * 剩余元素组成的流的工厂，同时提供从不缓存计算结果的源流创建剩余元素的方式
+ * 流节点转换成不缓存计算结果的流时使用后者，避免通过捕获的源流缓存已遍历的元素
+ * @param memoized 从原来的源流创建剩余元素组成的流
+ * @param unmemoized 从不缓存计算结果的源流创建剩余元素组成的流
+ * @param <T> 元素类型
+ */
+record Continuation<T>(Supplier<Stream<T>> memoized, Supplier<Stream<T>> unmemoized) implements Supplier<Stream<T>> {
+    @Override
+    public Stream<T> get() {
+        return memoized.get();
+    }
+
+    /**
+     * 获取不通过缓存计算结果的源流创建剩余元素的工厂
+     * @param s 工厂
+     * @param <T> 元素类型
+     * @return 工厂，s不是Continuation时返回s本身
+     */
+    static <T> Supplier<Stream<T>> unmemoized(Supplier<Stream<T>> s) {
+        return s instanceof Continuation<T> c ? c.unmemoized : s;
+    }
+}
@@ -0,0 +1,73 @@
+package byx.project.stream;
+
+import java.util.Iterator;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * 只能遍历一次的游标
+ * 游标只持有当前位置，遍历时使用不缓存计算结果的流，已遍历的元素不会被保留，
+ * 即使流的头部仍然被其他地方引用，遍历任意长度的流时占用的内存也不会增长
+ * 关闭游标时同时关闭创建游标的流，提前结束遍历时可以用来停止后台任务
+ * @param <T> 元素类型
+ */
+public final class Cursor<T> implements Iterator<T>, AutoCloseable {
+    private final Iterator<T> iterator;
+    private final Runnable onClose;
+
+    Cursor(Iterator<T> iterator, Runnable onClose) {
+        this.iterator = iterator;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> consumer) {
+        iterator.forEachRemaining(consumer);
+    }
+
+    /**
+     * 聚合剩余的元素
+     * @param initial 初始值
+     * @param accumulator 聚合操作
+     * @param <U> 聚合后的类型
+     * @return 聚合结果
+     */
+    public <U> U collect(U initial, BiFunction<U, T, U> accumulator) {
+        U result = initial;
+        while (iterator.hasNext()) {
+            result = accumulator.apply(result, iterator.next());
+        }
+        return result;
+    }
+
+    /**
+     * 获取剩余元素的个数
+     * @return 元素个数
+     */
+    public long count() {
+        long cnt = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            cnt++;
+        }
+        return cnt;
+    }
+
+    /**
+     * 关闭创建游标的流
+     */
+    @Override
+    public void close() {
+        onClose.run();
+    }
+}
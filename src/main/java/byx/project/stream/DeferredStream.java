@@ -0,0 +1,120 @@
+package byx.project.stream;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 第一次访问时才创建的流
+ * 调用end、first、remain或其他操作时才通过工厂创建实际的流，之后的操作都转发给实际的流
+ * 可以指定关闭流时执行的操作，用于停止为实际的流计算元素的后台任务
+ * 在此基础上调用map、filter、limit、skip返回的流仍然是延迟创建的流，关闭时同样执行该操作
+ * @param <T> 元素类型
+ */
+final class DeferredStream<T> implements Stream<T> {
+    private final Lazy<Stream<T>> stream;
+    private final boolean memoized;
+    private final Runnable onClose;
+
+    /**
+     * @param factory 实际的流的工厂，只会调用一次
+     */
+    DeferredStream(Supplier<Stream<T>> factory) {
+        this(factory, () -> {});
+    }
+
+    /**
+     * @param factory 实际的流的工厂，只会调用一次
+     * @param onClose 关闭流时执行的操作
+     */
+    DeferredStream(Supplier<Stream<T>> factory, Runnable onClose) {
+        this(factory, true, onClose);
+    }
+
+    private DeferredStream(Supplier<Stream<T>> factory, boolean memoized, Runnable onClose) {
+        this.stream = new Lazy<>(factory);
+        this.memoized = memoized;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public T first() {
+        return stream.get().first();
+    }
+
+    @Override
+    public Stream<T> remain() {
+        return stream.get().remain();
+    }
+
+    @Override
+    public boolean end() {
+        return stream.get().end();
+    }
+
+    @Override
+    public boolean memoized() {
+        return memoized;
+    }
+
+    @Override
+    public Stream<T> unmemoized() {
+        return memoized ? new DeferredStream<>(() -> stream.get().unmemoized(), false, onClose) : this;
+    }
+
+    @Override
+    public void close() {
+        onClose.run();
+    }
+
+    @Override
+    public int characteristics() {
+        return stream.get().characteristics();
+    }
+
+    @Override
+    public long estimateSize() {
+        return stream.get().estimateSize();
+    }
+
+    @Override
+    public <U> U collect(U initial, BiFunction<U, T, U> accumulator) {
+        return stream.get().collect(initial, accumulator);
+    }
+
+    @Override
+    public int count() {
+        return stream.get().count();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> consumer) {
+        stream.get().forEach(consumer);
+    }
+
+    @Override
+    public Stream<T> limit(int n) {
+        return n <= 0
+                ? Stream.empty()
+                : new DeferredStream<>(() -> stream.get().limit(n), memoized, onClose);
+    }
+
+    @Override
+    public Stream<T> skip(int n) {
+        return n <= 0
+                ? this
+                : new DeferredStream<>(() -> stream.get().skip(n), memoized, onClose);
+    }
+
+    @Override
+    public <U> Stream<U> map(Function<T, U> mapper) {
+        return new DeferredStream<>(() -> stream.get().map(mapper), memoized, onClose);
+    }
+
+    @Override
+    public Stream<T> filter(Predicate<T> predicate) {
+        return new DeferredStream<>(() -> stream.get().filter(predicate), memoized, onClose);
+    }
+}
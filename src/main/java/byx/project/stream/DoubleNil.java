@@ -0,0 +1,21 @@
+package byx.project.stream;
+
+/**
+ * 空的DoubleStream，同时标志着流的结束
+ */
+final class DoubleNil implements DoubleStream {
+    @Override
+    public double first() {
+        throw new IllegalStateException("当前流已结束");
+    }
+
+    @Override
+    public DoubleStream remain() {
+        throw new IllegalStateException("当前流已结束");
+    }
+
+    @Override
+    public boolean end() {
+        return true;
+    }
+}
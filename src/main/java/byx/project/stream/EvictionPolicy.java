@@ -0,0 +1,16 @@
+package byx.project.stream;
+
+/**
+ * 有界缓存的淘汰策略
+ */
+public enum EvictionPolicy {
+    /**
+     * 淘汰最久没有被访问的段
+     */
+    LRU,
+
+    /**
+     * 淘汰最早计算的段
+     */
+    FIFO
+}
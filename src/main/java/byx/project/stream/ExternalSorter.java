@@ -0,0 +1,214 @@
+package byx.project.stream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * 外部归并排序
+ * 内存中的元素超过上限时把排好序的一段写入临时文件，最后按需对所有段进行多路归并
+ * 段数超过MAX_FAN_IN时先把相邻的段逐轮归并成更长的段，同时打开的临时文件不超过MAX_FAN_IN个
+ * 段内使用稳定排序，归并时相等的元素按段的顺序输出，因此整体排序是稳定的
+ * @param <T> 元素类型
+ */
+final class ExternalSorter<T> implements Iterator<T> {
+    /**
+     * 一次归并最多同时读取的段数
+     */
+    static final int MAX_FAN_IN = 64;
+
+    private final PriorityQueue<Run<T>> queue;
+    private final Runs runs;
+
+    private ExternalSorter(PriorityQueue<Run<T>> queue, Runs runs) {
+        this.queue = queue;
+        this.runs = runs;
+        // 清理操作只引用runs，不会阻止当前对象被回收
+        Threads.CLEANER.register(this, runs);
+    }
+
+    /**
+     * 对流中的元素排序
+     * @param source 源流
+     * @param comparator 比较器，为null时按自然顺序
+     * @param memoryLimit 内存中最多保存的元素个数
+     * @param <T> 元素类型
+     * @return 排序后的流
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Stream<T> sort(Stream<T> source, Comparator<? super T> comparator, int memoryLimit) {
+        long size = source.exactSize();
+        Object[] buffer = new Object[(int) Math.min(memoryLimit, size >= 0 ? Math.max(size, 1) : 16)];
+        int n = 0;
+        Runs runs = new Runs();
+        // 通过游标读取源流，已经写入临时文件的元素不会因为源流的头部被引用而保留在内存中
+        Iterator<T> it = source.cursor();
+        try {
+            while (it.hasNext()) {
+                T e = it.next();
+                if (n == buffer.length) {
+                    if (n == memoryLimit) {
+                        Arrays.sort(buffer, 0, n, (Comparator<Object>) comparator);
+                        runs.add(spill(buffer, n));
+                        n = 0;
+                    } else {
+                        buffer = Arrays.copyOf(buffer, (int) Math.min((long) n * 2, memoryLimit));
+                    }
+                }
+                buffer[n++] = e;
+            }
+            if (runs.files.isEmpty()) {
+                return HeapSorter.sort(buffer, n, comparator);
+            }
+            Arrays.sort(buffer, 0, n, (Comparator<Object>) comparator);
+
+            // 最后一段留在内存中，与临时文件中的段一起归并
+            Comparator<T> cmp = comparator == null ? (Comparator<T>) Comparator.naturalOrder() : (Comparator<T>) comparator;
+            List<SpillFile> files = new ArrayList<>(runs.files);
+            while (files.size() >= MAX_FAN_IN) {
+                files = mergePass(files, cmp, runs);
+            }
+            List<Iterator<T>> iterators = new ArrayList<>(files.size() + 1);
+            for (SpillFile file : files) {
+                iterators.add(file.read());
+            }
+            iterators.add((Iterator<T>) Arrays.asList(buffer).subList(0, n).iterator());
+            PriorityQueue<Run<T>> queue = queue(iterators, cmp);
+            return Stream.fromIterator(new ExternalSorter<>(queue, runs));
+        } catch (IOException e) {
+            runs.run();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException | Error e) {
+            runs.run();
+            throw e;
+        }
+    }
+
+    /**
+     * 把内存中排好序的元素写入临时文件
+     */
+    private static SpillFile spill(Object[] buffer, int n) throws IOException {
+        SpillFile file = SpillFile.create("stream-sort-");
+        try {
+            for (int i = 0; i < n; i++) {
+                file.write(buffer[i]);
+                buffer[i] = null;
+            }
+            file.finish();
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * 把每MAX_FAN_IN个相邻的段归并成一段，合并后的段保持原来的先后顺序
+     */
+    private static <T> List<SpillFile> mergePass(List<SpillFile> files, Comparator<T> cmp, Runs runs) throws IOException {
+        List<SpillFile> merged = new ArrayList<>((files.size() + MAX_FAN_IN - 1) / MAX_FAN_IN);
+        for (int i = 0; i < files.size(); i += MAX_FAN_IN) {
+            List<SpillFile> group = files.subList(i, Math.min(i + MAX_FAN_IN, files.size()));
+            if (group.size() == 1) {
+                merged.add(group.get(0));
+                continue;
+            }
+            List<Iterator<T>> iterators = new ArrayList<>(group.size());
+            for (SpillFile file : group) {
+                iterators.add(file.read());
+            }
+            PriorityQueue<Run<T>> queue = queue(iterators, cmp);
+            SpillFile file = SpillFile.create("stream-sort-");
+            runs.add(file);
+            while (!queue.isEmpty()) {
+                Run<T> run = queue.poll();
+                file.write(run.head);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            file.finish();
+            merged.add(file);
+        }
+        return merged;
+    }
+
+    /**
+     * 创建归并用的优先队列，相等的元素按段的顺序出队
+     */
+    private static <T> PriorityQueue<Run<T>> queue(List<Iterator<T>> iterators, Comparator<T> cmp) {
+        PriorityQueue<Run<T>> queue = new PriorityQueue<>(iterators.size(), (r1, r2) -> {
+            int c = cmp.compare(r1.head, r2.head);
+            return c != 0 ? c : Integer.compare(r1.index, r2.index);
+        });
+        for (int i = 0; i < iterators.size(); i++) {
+            Run<T> run = new Run<>(i, iterators.get(i));
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+        return queue;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Run<T> run = queue.poll();
+        if (run == null) {
+            throw new NoSuchElementException("当前流已结束");
+        }
+        T e = run.head;
+        if (run.advance()) {
+            queue.add(run);
+        }
+        if (queue.isEmpty()) {
+            runs.run();
+        }
+        return e;
+    }
+
+    /**
+     * 参与归并的一段，head为当前段中下一个输出的元素
+     */
+    private static final class Run<T> {
+        final int index;
+        final Iterator<T> iterator;
+        T head;
+
+        Run(int index, Iterator<T> iterator) {
+            this.index = index;
+            this.iterator = iterator;
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                head = null;
+                return false;
+            }
+            head = iterator.next();
+            return true;
+        }
+    }
+
+    /**
+     * 临时文件，清理时删除所有文件
+     */
+    private static final class Runs implements Runnable {
+        final List<SpillFile> files = new ArrayList<>();
+
+        void add(SpillFile file) {
+            files.add(file);
+        }
+
+        @Override
+        public synchronized void run() {
+            for (SpillFile file : files) {
+                file.delete();
+            }
+        }
+    }
+}
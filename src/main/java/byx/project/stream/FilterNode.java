@@ -0,0 +1,44 @@
+package byx.project.stream;
+
+import java.util.function.Predicate;
+
+/**
+ * filter操作生成的流节点，第一个元素是源流中已经找到的满足条件的元素
+ * @param <T> 元素类型
+ */
+final class FilterNode<T> extends LazyNode<T> {
+    private Stream<T> matched;
+    private Predicate<T> predicate;
+
+    /**
+     * @param value 满足条件的元素
+     * @param matched 由满足条件的元素开头的源流
+     */
+    FilterNode(T value, Stream<T> matched, Predicate<T> predicate, boolean memoized) {
+        super(value, memoized);
+        this.matched = matched;
+        this.predicate = predicate;
+    }
+
+    @Override
+    T computeFirst() {
+        // 第一个元素在创建时已经给出
+        return first();
+    }
+
+    @Override
+    Stream<T> computeRemain() {
+        return matched.remain().filter(predicate);
+    }
+
+    @Override
+    LazyNode<T> unmemoizedCopy() {
+        return new FilterNode<>(first(), matched.unmemoized(), predicate, false);
+    }
+
+    @Override
+    void release() {
+        matched = null;
+        predicate = null;
+    }
+}
@@ -0,0 +1,437 @@
+package byx.project.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.*;
+
+/**
+ * 融合执行的流
+ * map、filter、limit、skip只记录操作，在调用聚合操作时才组装成Sink链，
+ * 然后在一个循环中把源流的元素依次推给Sink链，不再为每个操作创建中间流
+ * 通过first和remain访问时退化为等价的普通流
+ * 并行模式下，如果源流的元素个数已知或者源流由文件生成，并且流水线中只有map和filter，
+ * 则会把源流按范围拆分，在ForkJoinPool中执行，最后合并各部分的结果
+ * @param <S> 源流的元素类型
+ * @param <T> 元素类型
+ */
+final class FusedStream<S, T> implements Stream<T> {
+    private static final BooleanSupplier NEVER_STOP = () -> false;
+
+    private final Stream<S> source;
+    private final Function<Sink<T>, Sink<S>> wrap;
+    private final Function<Stream<S>, Stream<T>> pull;
+    private final boolean parallel;
+    private final boolean stateful;
+    private final int characteristicsMask;
+    private final Lazy<Stream<T>> pulled;
+
+    /**
+     * @param characteristicsMask 流水线中的操作保留的源流特征值
+     */
+    private FusedStream(Stream<S> source, Function<Sink<T>, Sink<S>> wrap, Function<Stream<S>, Stream<T>> pull,
+                        boolean parallel, boolean stateful, int characteristicsMask) {
+        this.source = source;
+        this.wrap = wrap;
+        this.pull = pull;
+        this.parallel = parallel;
+        this.stateful = stateful;
+        this.characteristicsMask = characteristicsMask;
+        this.pulled = new Lazy<>(() -> pull.apply(source));
+    }
+
+    /**
+     * 创建融合执行的流
+     * @param source 源流
+     * @param parallel 是否并行执行
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> FusedStream<T, T> of(Stream<T> source, boolean parallel) {
+        return new FusedStream<>(source, sink -> sink, s -> s, parallel, false, ~0);
+    }
+
+    /**
+     * 在当前流水线末尾添加一个操作
+     */
+    private <U> FusedStream<S, U> then(Function<Sink<U>, Sink<T>> op, Function<Stream<T>, Stream<U>> pullOp,
+                                       boolean stateful, int characteristicsMask) {
+        return new FusedStream<>(source, sink -> wrap.apply(op.apply(sink)), s -> pullOp.apply(pull.apply(s)),
+                parallel, this.stateful || stateful, this.characteristicsMask & characteristicsMask);
+    }
+
+    /**
+     * 聚合操作是否可能拆分成多个部分并行执行
+     */
+    boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * 获取可以并行处理的源流的Spliterator
+     * @return Spliterator，不能并行处理时返回null
+     */
+    private Spliterator<S> parallelSpliterator() {
+        if (!parallel || stateful) {
+            return null;
+        }
+        if (source instanceof ChunkStream<S> c) {
+            return c.arraySpliterator();
+        }
+        return source instanceof SpliteratorStream<S> ss ? ss.spliterator() : null;
+    }
+
+    /**
+     * 把源流的元素依次推给sink，直到源流结束或sink取消
+     * @param sink sink
+     */
+    private void run(Sink<T> sink) {
+        Sink<S> head = wrap.apply(sink);
+        if (head.cancellationRequested()) {
+            return;
+        }
+        if (source instanceof SpliteratorStream<S> ss) {
+            Spliterator<S> spliterator = ss.spliterator();
+            while (!head.cancellationRequested() && spliterator.tryAdvance(head)) {
+            }
+            return;
+        }
+        Stream<S> s = source;
+        while (!s.end()) {
+            if (s instanceof ChunkStream<S> c) {
+                if (c.pushChunk(head)) {
+                    return;
+                }
+                s = c.rest();
+            } else {
+                head.accept(s.first());
+                if (head.cancellationRequested()) {
+                    return;
+                }
+                s = s.remain();
+            }
+        }
+    }
+
+    @Override
+    public T first() {
+        return pulled.get().first();
+    }
+
+    @Override
+    public Stream<T> remain() {
+        return pulled.get().remain();
+    }
+
+    @Override
+    public boolean end() {
+        return pulled.get().end();
+    }
+
+    @Override
+    public boolean memoized() {
+        return source.memoized();
+    }
+
+    @Override
+    public Stream<T> unmemoized() {
+        return new FusedStream<>(source.unmemoized(), wrap, pull, parallel, stateful, characteristicsMask);
+    }
+
+    @Override
+    public Stream<T> fused() {
+        return this;
+    }
+
+    @Override
+    public Stream<T> parallel() {
+        return parallel ? this : new FusedStream<>(source, wrap, pull, true, stateful, characteristicsMask);
+    }
+
+    @Override
+    public int characteristics() {
+        return source.characteristics() & characteristicsMask;
+    }
+
+    @Override
+    public long estimateSize() {
+        // 流水线中的操作都不会增加元素个数
+        return source.estimateSize();
+    }
+
+    @Override
+    public <U> Stream<U> map(Function<T, U> mapper) {
+        return then(sink -> new Sink.Chained<T, U>(sink) {
+            @Override
+            public void accept(T e) {
+                downstream.accept(mapper.apply(e));
+            }
+        }, s -> s.map(mapper), false, ~(Spliterator.DISTINCT | Spliterator.SORTED));
+    }
+
+    @Override
+    public Stream<T> filter(Predicate<T> predicate) {
+        return then(sink -> new Sink.Chained<T, T>(sink) {
+            @Override
+            public void accept(T e) {
+                if (predicate.test(e)) {
+                    downstream.accept(e);
+                }
+            }
+        }, s -> s.filter(predicate), false, ~(Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    @Override
+    public Stream<T> limit(int n) {
+        return then(sink -> new Sink.Chained<T, T>(sink) {
+            private int cnt = 0;
+
+            @Override
+            public void accept(T e) {
+                if (cnt < n) {
+                    cnt++;
+                    downstream.accept(e);
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested() {
+                return cnt >= n || downstream.cancellationRequested();
+            }
+        }, s -> s.limit(n), true, ~(Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    @Override
+    public Stream<T> skip(int n) {
+        return then(sink -> new Sink.Chained<T, T>(sink) {
+            private int cnt = 0;
+
+            @Override
+            public void accept(T e) {
+                if (cnt < n) {
+                    cnt++;
+                } else {
+                    downstream.accept(e);
+                }
+            }
+        }, s -> s.skip(n), true, ~(Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> U collect(U initial, BiFunction<U, T, U> accumulator) {
+        Object[] result = {initial};
+        run(e -> result[0] = accumulator.apply((U) result[0], e));
+        return (U) result[0];
+    }
+
+    @Override
+    public <U> U collect(Supplier<U> supplier, BiFunction<U, T, U> accumulator, BinaryOperator<U> combiner) {
+        Spliterator<S> spliterator = parallelSpliterator();
+        if (spliterator == null) {
+            return collect(supplier.get(), accumulator);
+        }
+        return parallelCollect(spliterator, supplier, accumulator, combiner, NEVER_STOP);
+    }
+
+    /**
+     * 并行聚合源流的元素
+     * @param stop 是否可以停止聚合，返回true后尚未处理的元素不会再被处理
+     */
+    private <U> U parallelCollect(Spliterator<S> spliterator, Supplier<U> supplier, BiFunction<U, T, U> accumulator,
+                                  BinaryOperator<U> combiner, BooleanSupplier stop) {
+        long threshold = Math.max(1, spliterator.estimateSize() / (ForkJoinPool.getCommonPoolParallelism() * 4L));
+        return new CollectTask<>(spliterator, threshold, supplier, accumulator, combiner, stop).invoke();
+    }
+
+    @Override
+    public Optional<T> findFirst() {
+        // 用数组包装找到的元素，以区分没有找到和找到了null
+        Object[][] found = {null};
+        run(new Sink<T>() {
+            @Override
+            public void accept(T e) {
+                found[0] = new Object[]{e};
+            }
+
+            @Override
+            public boolean cancellationRequested() {
+                return found[0] != null;
+            }
+        });
+        return found[0] == null ? Optional.empty() : Optional.of(unbox(found[0]));
+    }
+
+    @Override
+    public Optional<T> findAny() {
+        Spliterator<S> spliterator = parallelSpliterator();
+        if (spliterator == null) {
+            return findFirst();
+        }
+        AtomicReference<Object[]> found = new AtomicReference<>();
+        parallelCollect(spliterator, () -> null, (u, e) -> {
+            found.compareAndSet(null, new Object[]{e});
+            return null;
+        }, (u1, u2) -> null, () -> found.get() != null);
+        return found.get() == null ? Optional.empty() : Optional.of(unbox(found.get()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private T unbox(Object[] box) {
+        return (T) box[0];
+    }
+
+    @Override
+    public boolean anyMatch(Predicate<T> predicate) {
+        Spliterator<S> spliterator = parallelSpliterator();
+        if (spliterator == null) {
+            boolean[] matched = {false};
+            run(new Sink<T>() {
+                @Override
+                public void accept(T e) {
+                    matched[0] = predicate.test(e);
+                }
+
+                @Override
+                public boolean cancellationRequested() {
+                    return matched[0];
+                }
+            });
+            return matched[0];
+        }
+        AtomicBoolean matched = new AtomicBoolean();
+        parallelCollect(spliterator, () -> null, (u, e) -> {
+            if (predicate.test(e)) {
+                matched.set(true);
+            }
+            return null;
+        }, (u1, u2) -> null, matched::get);
+        return matched.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<T> reduce(BinaryOperator<T> accumulator) {
+        // 用数组包装部分结果，以区分没有元素和结果为null
+        Object[] result = collect(() -> null, (r, e) -> {
+            if (r == null) {
+                return new Object[]{e};
+            }
+            r[0] = accumulator.apply((T) r[0], e);
+            return r;
+        }, (r1, r2) -> {
+            if (r1 == null || r2 == null) {
+                return r1 == null ? r2 : r1;
+            }
+            r1[0] = accumulator.apply((T) r1[0], (T) r2[0]);
+            return r1;
+        });
+        return result == null ? Optional.empty() : Optional.of((T) result[0]);
+    }
+
+    /**
+     * 获取流中元素个数
+     * @return 元素个数
+     * @throws ArithmeticException 元素个数超过int的范围
+     */
+    @Override
+    public int count() {
+        long size = exactSize();
+        if (size >= 0) {
+            return Math.toIntExact(size);
+        }
+        if (parallelSpliterator() == null) {
+            long[] cnt = {0};
+            run(e -> cnt[0]++);
+            return Math.toIntExact(cnt[0]);
+        }
+        return Math.toIntExact(collect(() -> new long[1], (cnt, e) -> {
+            cnt[0]++;
+            return cnt;
+        }, (c1, c2) -> {
+            c1[0] += c2[0];
+            return c1;
+        })[0]);
+    }
+
+    @Override
+    public List<T> toList() {
+        if (parallelSpliterator() == null) {
+            return Stream.super.toList();
+        }
+        // 并行执行时每部分元素各自创建列表，不按总的元素个数预先分配容量
+        return collect(ArrayList::new, (list, e) -> {
+            list.add(e);
+            return list;
+        }, (list1, list2) -> {
+            list1.addAll(list2);
+            return list1;
+        });
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> consumer) {
+        if (parallelSpliterator() == null) {
+            run(consumer::accept);
+        } else {
+            collect(() -> null, (u, e) -> {
+                consumer.accept(e);
+                return null;
+            }, (u1, u2) -> null);
+        }
+    }
+
+    /**
+     * 并行聚合源流的一部分元素
+     * 元素个数不超过阈值时直接聚合，否则拆分成两部分分别聚合，再按顺序合并结果
+     */
+    @SuppressWarnings("serial")
+    private final class CollectTask<U> extends RecursiveTask<U> {
+        private final Spliterator<S> spliterator;
+        private final long threshold;
+        private final Supplier<U> supplier;
+        private final BiFunction<U, T, U> accumulator;
+        private final BinaryOperator<U> combiner;
+        private final BooleanSupplier stop;
+
+        CollectTask(Spliterator<S> spliterator, long threshold, Supplier<U> supplier,
+                    BiFunction<U, T, U> accumulator, BinaryOperator<U> combiner, BooleanSupplier stop) {
+            this.spliterator = spliterator;
+            this.threshold = threshold;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.stop = stop;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected U compute() {
+            if (stop.getAsBoolean()) {
+                return supplier.get();
+            }
+            Spliterator<S> prefix;
+            if (spliterator.estimateSize() > threshold && (prefix = spliterator.trySplit()) != null) {
+                CollectTask<U> left = new CollectTask<>(prefix, threshold, supplier, accumulator, combiner, stop);
+                left.fork();
+                U right = new CollectTask<>(spliterator, threshold, supplier, accumulator, combiner, stop).compute();
+                return combiner.apply(left.join(), right);
+            }
+            Object[] result = {supplier.get()};
+            Sink<S> head = wrap.apply(e -> result[0] = accumulator.apply((U) result[0], e));
+            if (stop == NEVER_STOP) {
+                spliterator.forEachRemaining(head);
+            } else {
+                // 每处理一个元素检查一次是否可以停止，其他部分找到结果后尽快结束
+                while (!stop.getAsBoolean() && spliterator.tryAdvance(head)) {
+                }
+            }
+            return (U) result[0];
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package byx.project.stream;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * 迭代生成的流节点
+ * @param <T> 元素类型
+ */
+final class GeneratorNode<T> extends LazyNode<T> {
+    private UnaryOperator<T> generator;
+
+    GeneratorNode(T value, UnaryOperator<T> generator) {
+        super(value, true);
+        this.generator = generator;
+    }
+
+    @Override
+    T computeFirst() {
+        // 第一个元素在创建时已经给出
+        return first();
+    }
+
+    @Override
+    Stream<T> computeRemain() {
+        return new GeneratorNode<>(generator.apply(first()), generator);
+    }
+
+    @Override
+    void release() {
+        generator = null;
+    }
+}
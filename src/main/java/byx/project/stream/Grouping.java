@@ -0,0 +1,114 @@
+package byx.project.stream;
+
+import java.util.HashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * 分组操作的实现
+ * 分组数不会超过元素个数，元素个数已知并且较少时按元素个数预先分配哈希表的空间，
+ * 元素个数较多时分组数通常远小于元素个数，只预先分配有限的空间，之后按需扩容
+ */
+final class Grouping {
+    // 预先分配空间的分组个数上限
+    static final int MAX_PRESIZE = 1 << 12;
+
+    private Grouping() {
+    }
+
+    /**
+     * 预先分配空间的分组个数
+     * 并行执行时每个部分都会创建自己的哈希表，此时不预先分配空间
+     * @param s 流
+     * @return 分组个数，元素个数未知或者并行执行时返回-1
+     */
+    static int expectedGroups(Stream<?> s) {
+        if (s instanceof FusedStream<?, ?> f && f.isParallel()) {
+            return -1;
+        }
+        long size = s.exactSize();
+        return size < 0 ? -1 : (int) Math.min(size, MAX_PRESIZE);
+    }
+
+    /**
+     * 创建能容纳expected个键而不需要扩容的HashMap
+     * @param expected 预计的键的个数，小于0时表示未知
+     * @param <K> 键的类型
+     * @param <V> 值的类型
+     * @return HashMap
+     */
+    static <K, V> HashMap<K, V> newHashMap(int expected) {
+        return expected < 0
+                ? new HashMap<>()
+                : new HashMap<>((int) Math.min(1 << 30, expected * 4L / 3 + 1));
+    }
+
+    /**
+     * 按int类型的键分组
+     * @param source 源流
+     * @param keyFn 键的生成函数
+     * @param downstream 每个分组的聚合操作
+     * @param <T> 元素类型
+     * @param <A> 聚合的中间结果类型
+     * @param <D> 聚合结果类型
+     * @return 键到聚合结果的哈希表
+     */
+    @SuppressWarnings("unchecked")
+    static <T, A, D> IntHashMap<D> groupByInt(Stream<T> source, ToIntFunction<? super T> keyFn,
+                                              Collector<? super T, A, D> downstream) {
+        int expected = expectedGroups(source);
+        Supplier<A> supplier = downstream.supplier();
+        BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+        BinaryOperator<A> combiner = downstream.combiner();
+        // 在循环外创建，避免为每个元素创建捕获supplier的lambda
+        IntFunction<A> newContainer = k -> supplier.get();
+        IntHashMap<A> map = source.collect(() -> expected < 0 ? new IntHashMap<>() : new IntHashMap<>(expected), (m, e) -> {
+            accumulator.accept(m.computeIfAbsent(keyFn.applyAsInt(e), newContainer), e);
+            return m;
+        }, (m1, m2) -> {
+            m2.forEach((a, k) -> m1.put(k, m1.containsKey(k) ? combiner.apply(m1.get(k), a) : a));
+            return m1;
+        });
+        if (!downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            map.replaceAll(a -> downstream.finisher().apply((A) a));
+        }
+        return (IntHashMap<D>) map;
+    }
+
+    /**
+     * 按long类型的键分组
+     * @param source 源流
+     * @param keyFn 键的生成函数
+     * @param downstream 每个分组的聚合操作
+     * @param <T> 元素类型
+     * @param <A> 聚合的中间结果类型
+     * @param <D> 聚合结果类型
+     * @return 键到聚合结果的哈希表
+     */
+    @SuppressWarnings("unchecked")
+    static <T, A, D> LongHashMap<D> groupByLong(Stream<T> source, ToLongFunction<? super T> keyFn,
+                                                Collector<? super T, A, D> downstream) {
+        int expected = expectedGroups(source);
+        Supplier<A> supplier = downstream.supplier();
+        BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+        BinaryOperator<A> combiner = downstream.combiner();
+        LongFunction<A> newContainer = k -> supplier.get();
+        LongHashMap<A> map = source.collect(() -> expected < 0 ? new LongHashMap<>() : new LongHashMap<>(expected), (m, e) -> {
+            accumulator.accept(m.computeIfAbsent(keyFn.applyAsLong(e), newContainer), e);
+            return m;
+        }, (m1, m2) -> {
+            m2.forEach((a, k) -> m1.put(k, m1.containsKey(k) ? combiner.apply(m1.get(k), a) : a));
+            return m1;
+        });
+        if (!downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            map.replaceAll(a -> downstream.finisher().apply((A) a));
+        }
+        return (LongHashMap<D>) map;
+    }
+}
@@ -0,0 +1,108 @@
+package byx.project.stream;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+
+/**
+ * 增量排序
+ * 先用O(n)的时间建堆，之后每次只从堆中取出一批最小的元素，
+ * 因此只访问前k个元素的代价为O(n + k log n)
+ * 堆中同时记录元素原来的位置，相等的元素按原来的位置比较，因此排序是稳定的
+ * @param <T> 元素类型
+ */
+final class HeapSorter<T> {
+    /**
+     * 第一批取出的元素个数，之后每批加倍，直到ChunkStream.CHUNK_SIZE
+     */
+    private static final int FIRST_BATCH_SIZE = 16;
+
+    private final Object[] heap;
+    private final int[] index;
+    private final Comparator<? super T> comparator;
+    private final int characteristics;
+    private int size;
+
+    private HeapSorter(Object[] elements, int n, Comparator<? super T> comparator, int characteristics) {
+        this.heap = elements;
+        this.index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+        }
+        this.comparator = comparator;
+        this.characteristics = characteristics;
+        this.size = n;
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * 对数组中的前n个元素排序，数组会被修改
+     * @param elements 元素数组
+     * @param n 元素个数
+     * @param comparator 比较器，为null时按自然顺序
+     * @param <T> 元素类型
+     * @return 排序后的流
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Stream<T> sort(Object[] elements, int n, Comparator<? super T> comparator) {
+        if (n == 0) {
+            return Stream.empty();
+        }
+        Comparator<? super T> cmp = comparator == null ? (Comparator<? super T>) Comparator.naturalOrder() : comparator;
+        return new HeapSorter<T>(elements, n, cmp, comparator == null ? Spliterator.SORTED : 0)
+                .next(FIRST_BATCH_SIZE);
+    }
+
+    /**
+     * 从堆中取出下一批元素
+     * @param batchSize 这一批最多取出的元素个数
+     * @return 剩余元素组成的流
+     */
+    private Stream<T> next(int batchSize) {
+        if (size == 0) {
+            return Stream.empty();
+        }
+        long remaining = size;
+        Object[] batch = new Object[Math.min(batchSize, size)];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = heap[0];
+            size--;
+            heap[0] = heap[size];
+            index[0] = index[size];
+            heap[size] = null;
+            siftDown(0);
+        }
+        int nextSize = Math.min(batchSize * 2, ChunkStream.CHUNK_SIZE);
+        // 堆只能取出一次，不缓存计算结果的流也共享取出的下一批元素
+        return ChunkStream.create(batch, 0, batch.length, new Lazy<>(() -> next(nextSize)), remaining, characteristics);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean less(int i, int j) {
+        int c = comparator.compare((T) heap[i], (T) heap[j]);
+        return c < 0 || c == 0 && index[i] < index[j];
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && less(child + 1, child)) {
+                child++;
+            }
+            if (!less(child, i)) {
+                return;
+            }
+            Object e = heap[i];
+            heap[i] = heap[child];
+            heap[child] = e;
+            int k = index[i];
+            index[i] = index[child];
+            index[child] = k;
+            i = child;
+        }
+    }
+}
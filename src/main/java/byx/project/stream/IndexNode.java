@@ -0,0 +1,41 @@
+package byx.project.stream;
+
+/**
+ * zipWithIndex操作生成的流节点
+ * @param <S> 源流的元素类型
+ * @param <T> 元素类型
+ */
+final class IndexNode<S, T> extends LazyNode<T> {
+    private Stream<S> source;
+    private final long index;
+    private IndexedFunction<S, T> mapper;
+
+    IndexNode(Stream<S> source, long index, IndexedFunction<S, T> mapper, boolean memoized) {
+        super(memoized);
+        this.source = source;
+        this.index = index;
+        this.mapper = mapper;
+    }
+
+    @Override
+    T computeFirst() {
+        return mapper.apply(index, source.first());
+    }
+
+    @Override
+    Stream<T> computeRemain() {
+        Stream<S> r = source.remain();
+        return r.end() ? Stream.empty() : new IndexNode<>(r, index + 1, mapper, memoized());
+    }
+
+    @Override
+    LazyNode<T> unmemoizedCopy() {
+        return new IndexNode<>(source.unmemoized(), index, mapper, false);
+    }
+
+    @Override
+    void release() {
+        source = null;
+        mapper = null;
+    }
+}
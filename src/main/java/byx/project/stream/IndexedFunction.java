@@ -0,0 +1,17 @@
+package byx.project.stream;
+
+/**
+ * 接受元素及其下标的函数，下标是long类型，不会被装箱
+ * @param <T> 元素类型
+ * @param <R> 结果类型
+ */
+@FunctionalInterface
+public interface IndexedFunction<T, R> {
+    /**
+     * 计算结果
+     * @param index 元素的下标，从0开始
+     * @param element 元素
+     * @return 结果
+     */
+    R apply(long index, T element);
+}
@@ -0,0 +1,384 @@
+package byx.project.stream;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.*;
+
+/**
+ * 由int数组中连续的一段元素和剩余元素组成的流组成的IntStream节点
+ * 数组中的元素在第一次被访问时才计算，map的结果每个元素单独计算，其余元素按下标顺序计算，
+ * 聚合操作直接遍历整段数组，不会为每个元素创建流节点
+ */
+final class IntChunk implements IntStream {
+    private final Values values;
+    final int from;
+    final int to;
+    private final Supplier<IntStream> tail;
+
+    private IntChunk(Values values, int from, int to, Supplier<IntStream> tail) {
+        this.values = values;
+        this.from = from;
+        this.to = to;
+        this.tail = tail;
+    }
+
+    /**
+     * 创建流节点，要求from < to
+     * @param values 元素
+     * @param from 起始索引（包含）
+     * @param to 结束索引（不包含）
+     * @param tail 剩余元素组成的流的工厂，只会被调用一次
+     * @return 流
+     */
+    private static IntChunk create(Values values, int from, int to, Supplier<IntStream> tail) {
+        return new IntChunk(values, from, to, new Lazy<>(tail));
+    }
+
+    /**
+     * 创建只包含数组中一段元素的流
+     * @param arr 数组
+     * @param from 起始索引（包含）
+     * @param to 结束索引（不包含）
+     * @return 流
+     */
+    static IntStream of(int[] arr, int from, int to) {
+        return from >= to
+                ? IntStream.empty()
+                : new IntChunk(new Values(arr), from, to, IntStream::empty);
+    }
+
+    /**
+     * 创建只包含一个元素的节点，first和remain最多只会被计算一次
+     * @param first 第一个元素的工厂
+     * @param remain 剩余元素组成的流的工厂
+     * @return 流
+     */
+    static IntStream single(IntSupplier first, Supplier<IntStream> remain) {
+        return create(new Values(1, (arr, k) -> first.getAsInt()), 0, 1, remain);
+    }
+
+    /**
+     * 生成区间[start, end)内的整数组成的流，每段最多包含CHUNK_SIZE个整数
+     * @param start 起始值（包含）
+     * @param end 结束值（不包含）
+     * @return 流
+     */
+    static IntStream range(int start, int end) {
+        if (start >= end) {
+            return IntStream.empty();
+        }
+        int n = (int) Math.min((long) end - start, ChunkStream.CHUNK_SIZE);
+        return create(new Values(n, (arr, k) -> start + k), 0, n, () -> range(start + n, end));
+    }
+
+    /**
+     * 迭代生成流，每段包含CHUNK_SIZE个元素
+     * @param initial 初始值
+     * @param generator 生成器
+     * @return 流
+     */
+    static IntStream iterate(int initial, IntUnaryOperator generator) {
+        int n = ChunkStream.CHUNK_SIZE;
+        Values values = new Values(n, (arr, k) -> k == 0 ? initial : generator.applyAsInt(arr[k - 1]));
+        return create(values, 0, n, () -> iterate(generator.applyAsInt(values.get(n - 1)), generator));
+    }
+
+    /**
+     * 从迭代器读取元素生成流节点，要求迭代器还有元素
+     * 与ChunkStream.fromIterator相同，第一段只包含一个元素，之后每段的长度倍增到CHUNK_SIZE
+     * @param iterator 迭代器
+     * @return 流
+     */
+    static IntStream fromIterator(PrimitiveIterator.OfInt iterator) {
+        Values head = new Values(1, (arr, k) -> iterator.nextInt());
+        return create(head, 0, 1, () -> {
+            // 读取下一段之前先读取第一个元素，保持迭代器的顺序
+            head.get(0);
+            return readChunk(iterator, 2);
+        });
+    }
+
+    private static IntStream readChunk(PrimitiveIterator.OfInt iterator, int length) {
+        int[] arr = new int[length];
+        int n = 0;
+        while (n < length && iterator.hasNext()) {
+            arr[n++] = iterator.nextInt();
+        }
+        int next = Math.min(length * 2, ChunkStream.CHUNK_SIZE);
+        return n == 0
+                ? IntStream.empty()
+                : create(new Values(arr), 0, n, () -> readChunk(iterator, next));
+    }
+
+    /**
+     * 把迭代器中的元素映射成int生成流节点，要求迭代器还有元素
+     * @param iterator 迭代器
+     * @param mapper 映射器
+     * @param <T> 迭代器的元素类型
+     * @return 流
+     */
+    static <T> IntStream fromIterator(Iterator<T> iterator, ToIntFunction<? super T> mapper) {
+        return fromIterator(new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return mapper.applyAsInt(iterator.next());
+            }
+        });
+    }
+
+    /**
+     * 按顺序遍历流中元素的迭代器，逐段访问，不会为每个元素创建流节点
+     * 访问完一段之后，下次调用hasNext时才获取下一段
+     * @param s 流
+     * @return 迭代器
+     */
+    static PrimitiveIterator.OfInt iterator(IntStream s) {
+        return new PrimitiveIterator.OfInt() {
+            IntStream rest = s;
+            int index = s instanceof IntChunk c ? c.from : 0;
+
+            @Override
+            public boolean hasNext() {
+                while (rest instanceof IntChunk c && index == c.to) {
+                    rest = c.rest();
+                    index = rest instanceof IntChunk n ? n.from : 0;
+                }
+                return rest instanceof IntChunk;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("当前流已结束");
+                }
+                return ((IntChunk) rest).element(index++);
+            }
+        };
+    }
+
+    /**
+     * 获取当前段所在的数组中下标为i的元素
+     * @param i 下标，在[from, to)范围内
+     * @return 元素
+     */
+    int element(int i) {
+        return values.get(i);
+    }
+
+    /**
+     * 计算当前段内的所有元素
+     * @return 当前段所在的数组，当前段的元素位于[from, to)
+     */
+    int[] array() {
+        return values.compute(from, to);
+    }
+
+    /**
+     * 当前段之后的元素组成的流
+     */
+    IntStream rest() {
+        return tail.get();
+    }
+
+    /**
+     * 跳过当前段内的前k个元素
+     * @param k 跳过的个数，不超过当前段的长度
+     * @return 流
+     */
+    IntStream drop(int k) {
+        return from + k < to
+                ? new IntChunk(values, from + k, to, tail)
+                : rest();
+    }
+
+    @Override
+    public int first() {
+        return values.get(from);
+    }
+
+    @Override
+    public IntStream remain() {
+        return drop(1);
+    }
+
+    /**
+     * 截取前n个元素，要求n > 0
+     */
+    IntStream take(int n) {
+        int len = to - from;
+        return n <= len
+                ? new IntChunk(values, from, from + n, IntStream::empty)
+                : create(values, from, to, () -> rest().limit(n - len));
+    }
+
+    /**
+     * 映射当前段内的下一批元素，每个元素在第一次被访问时才单独计算，被跳过的元素不会计算
+     */
+    IntStream mapChunk(IntUnaryOperator mapper) {
+        int n = Math.min(to - from, ChunkStream.CHUNK_SIZE);
+        Values mapped = Values.independent(n, k -> mapper.applyAsInt(values.get(from + k)));
+        return create(mapped, 0, n, () -> drop(n).map(mapper));
+    }
+
+    /**
+     * 过滤当前段内的下一批元素
+     * @param predicate 断言
+     * @return 由满足条件的元素开头的流，没有满足条件的元素时返回null
+     */
+    IntStream filterChunk(IntPredicate predicate) {
+        int n = Math.min(to - from, ChunkStream.CHUNK_SIZE);
+        int[] result = new int[n];
+        int cnt = 0;
+        for (int i = from; i < from + n; i++) {
+            int e = values.get(i);
+            if (predicate.test(e)) {
+                result[cnt++] = e;
+            }
+        }
+        return cnt == 0
+                ? null
+                : create(new Values(result), 0, cnt, () -> drop(n).filter(predicate));
+    }
+
+    /**
+     * 把当前段内的下一批元素映射成对象，每批元素在第一次被访问时一起计算
+     */
+    <U> Stream<U> mapChunkToObj(IntFunction<U> mapper) {
+        int n = Math.min(to - from, ChunkStream.CHUNK_SIZE);
+        Lazy<Object[]> mapped = new Lazy<>(() -> {
+            Object[] result = new Object[n];
+            for (int k = 0; k < n; k++) {
+                result[k] = mapper.apply(values.get(from + k));
+            }
+            return result;
+        });
+        return ChunkStream.create(mapped, 0, n, () -> drop(n).mapToObj(mapper));
+    }
+
+    /**
+     * 把当前段内的下一批元素转换成long
+     */
+    LongStream chunkAsLong() {
+        int n = Math.min(to - from, ChunkStream.CHUNK_SIZE);
+        return LongChunk.generate(n, k -> values.get(from + k), () -> drop(n).asLongStream());
+    }
+
+    /**
+     * 把当前段内的下一批元素转换成double
+     */
+    DoubleStream chunkAsDouble() {
+        int n = Math.min(to - from, ChunkStream.CHUNK_SIZE);
+        return DoubleChunk.generate(n, k -> values.get(from + k), () -> drop(n).asDoubleStream());
+    }
+
+    /**
+     * 创建包含n个元素的流节点，第k个元素在第一次被访问时由generator计算，要求n > 0
+     * @param n 元素个数
+     * @param generator 第k个元素的生成函数，按k从小到大的顺序调用
+     * @param tail 剩余元素组成的流的工厂
+     * @return 流
+     */
+    static IntStream generate(int n, IntUnaryOperator generator, Supplier<IntStream> tail) {
+        return create(new Values(n, (arr, k) -> generator.applyAsInt(k)), 0, n, tail);
+    }
+
+    /**
+     * 计算第k个元素的函数，可以读取已经计算好的前k个元素
+     */
+    @FunctionalInterface
+    private interface Filler {
+        int fill(int[] values, int k);
+    }
+
+    /**
+     * 在第一次被访问时计算的一段元素，由共享同一个数组的节点共用
+     * 一般按下标顺序计算，元素互相独立时（例如map的结果）每个元素单独计算，被跳过的元素不会计算
+     */
+    private static final class Values {
+        private final int[] values;
+        private int computed;
+        private Filler filler;
+        // 元素互相独立时每个位置是否已经计算，为null时按下标顺序计算或者已经全部计算完成
+        private boolean[] done;
+        private IntUnaryOperator element;
+        private int remaining;
+
+        Values(int[] values) {
+            this.values = values;
+            this.computed = values.length;
+        }
+
+        Values(int n, Filler filler) {
+            this.values = new int[n];
+            this.filler = filler;
+        }
+
+        /**
+         * 创建互相独立的n个元素，第k个元素在第一次被访问时由element单独计算
+         */
+        static Values independent(int n, IntUnaryOperator element) {
+            Values v = new Values(n, null);
+            v.done = new boolean[n];
+            v.element = element;
+            v.remaining = n;
+            return v;
+        }
+
+        int get(int i) {
+            if (i < computed) {
+                return values[i];
+            }
+            return done != null ? computeAt(i) : compute(i + 1)[i];
+        }
+
+        private int computeAt(int i) {
+            if (!done[i]) {
+                values[i] = element.applyAsInt(i);
+                done[i] = true;
+                // 所有元素都计算完成后释放生成函数捕获的对象
+                if (--remaining == 0) {
+                    computed = values.length;
+                    done = null;
+                    element = null;
+                }
+            }
+            return values[i];
+        }
+
+        /**
+         * 计算下标在[from, to)范围内的元素，按下标顺序计算时同时计算前面的元素
+         * @return 保存元素的数组
+         */
+        int[] compute(int from, int to) {
+            if (done == null) {
+                return compute(to);
+            }
+            for (int i = from; i < to; i++) {
+                get(i);
+            }
+            return values;
+        }
+
+        /**
+         * 计算前n个元素
+         * @return 保存元素的数组
+         */
+        int[] compute(int n) {
+            while (computed < n) {
+                values[computed] = filler.fill(values, computed);
+                computed++;
+            }
+            // 所有元素都计算完成后释放生成函数捕获的对象
+            if (computed == values.length) {
+                filler = null;
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package byx.project.stream;
+
+/**
+ * 空的IntStream，同时标志着流的结束
+ */
+final class IntNil implements IntStream {
+    @Override
+    public int first() {
+        throw new IllegalStateException("当前流已结束");
+    }
+
+    @Override
+    public IntStream remain() {
+        throw new IllegalStateException("当前流已结束");
+    }
+
+    @Override
+    public boolean end() {
+        return true;
+    }
+}
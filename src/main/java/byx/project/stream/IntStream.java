@@ -0,0 +1,345 @@
+package byx.project.stream;
+
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.function.*;
+
+/**
+ * 元素类型为int的流，避免装箱
+ * 流由int数组中的一段段元素组成，聚合操作直接遍历数组，不会为每个元素创建流节点，
+ * map和filter每次处理一批元素，map得到的元素在第一次被访问时才计算
+ */
+public sealed interface IntStream permits IntChunk, IntNil {
+    /**
+     * 流中第一个元素
+     */
+    int first();
+
+    /**
+     * 剩余元素组成的流
+     */
+    IntStream remain();
+
+    /**
+     * 创建流
+     * first和remain最多只会被计算一次
+     * @param firstSupplier 第一个元素的工厂
+     * @param remainSupplier 剩余元素组成的流的工厂
+     * @return 流
+     */
+    static IntStream create(IntSupplier firstSupplier, Supplier<IntStream> remainSupplier) {
+        return IntChunk.single(firstSupplier, remainSupplier);
+    }
+
+    IntStream EMPTY = new IntNil();
+
+    /**
+     * 获取空流
+     */
+    static IntStream empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 判断当前流是否结束
+     */
+    default boolean end() {
+        return this == EMPTY;
+    }
+
+    /**
+     * 从数组生成流
+     * @param arr 数组
+     * @return 流
+     */
+    static IntStream of(int... arr) {
+        return fromArray(0, arr);
+    }
+
+    /**
+     * 从数组和起始索引生成流
+     * @param startIndex 起始索引
+     * @param arr 数组
+     * @return 流
+     */
+    static IntStream fromArray(int startIndex, int[] arr) {
+        return IntChunk.of(arr, startIndex, arr.length);
+    }
+
+    /**
+     * 生成区间[start, end)内的整数组成的流
+     * @param start 起始值（包含）
+     * @param end 结束值（不包含）
+     * @return 流
+     */
+    static IntStream range(int start, int end) {
+        return IntChunk.range(start, end);
+    }
+
+    /**
+     * 迭代生成流
+     * @param initial 初始值
+     * @param generator 生成器
+     * @return 流
+     */
+    static IntStream iterate(int initial, IntUnaryOperator generator) {
+        return IntChunk.iterate(initial, generator);
+    }
+
+    /**
+     * 遍历流中所有元素
+     * @param consumer 遍历操作
+     */
+    default void forEach(IntConsumer consumer) {
+        IntStream s = this;
+        while (s instanceof IntChunk c) {
+            for (int i = c.from; i < c.to; i++) {
+                consumer.accept(c.element(i));
+            }
+            s = c.rest();
+        }
+    }
+
+    /**
+     * 流的聚合操作
+     * @param initial 初始值
+     * @param accumulator 聚合操作
+     * @return 聚合结果
+     */
+    default int reduce(int initial, IntBinaryOperator accumulator) {
+        int result = initial;
+        IntStream s = this;
+        while (s instanceof IntChunk c) {
+            int[] arr = c.array();
+            for (int i = c.from; i < c.to; i++) {
+                result = accumulator.applyAsInt(result, arr[i]);
+            }
+            s = c.rest();
+        }
+        return result;
+    }
+
+    /**
+     * 获取流中元素个数
+     * 不会计算流中的元素
+     * @return 元素个数
+     */
+    default int count() {
+        int cnt = 0;
+        IntStream s = this;
+        while (s instanceof IntChunk c) {
+            cnt += c.to - c.from;
+            s = c.rest();
+        }
+        return cnt;
+    }
+
+    /**
+     * 对流中元素求和
+     * @return 元素之和
+     */
+    default int sum() {
+        int sum = 0;
+        IntStream s = this;
+        while (s instanceof IntChunk c) {
+            int[] arr = c.array();
+            for (int i = c.from; i < c.to; i++) {
+                sum += arr[i];
+            }
+            s = c.rest();
+        }
+        return sum;
+    }
+
+    /**
+     * 获取流中最小的元素
+     * @return 最小元素，流为空时返回空值
+     */
+    default OptionalInt min() {
+        return end() ? OptionalInt.empty() : OptionalInt.of(remain().reduce(first(), Math::min));
+    }
+
+    /**
+     * 获取流中最大的元素
+     * @return 最大元素，流为空时返回空值
+     */
+    default OptionalInt max() {
+        return end() ? OptionalInt.empty() : OptionalInt.of(remain().reduce(first(), Math::max));
+    }
+
+    /**
+     * 获取流中元素的平均值
+     * @return 平均值，流为空时返回空值
+     */
+    default OptionalDouble average() {
+        long sum = 0;
+        int cnt = 0;
+        IntStream s = this;
+        while (s instanceof IntChunk c) {
+            int[] arr = c.array();
+            for (int i = c.from; i < c.to; i++) {
+                sum += arr[i];
+            }
+            cnt += c.to - c.from;
+            s = c.rest();
+        }
+        return cnt == 0 ? OptionalDouble.empty() : OptionalDouble.of((double) sum / cnt);
+    }
+
+    /**
+     * 在一次遍历中统计元素的个数、总和、最小值、最大值和平均值
+     * @return 统计结果
+     */
+    default IntSummaryStatistics summaryStatistics() {
+        IntSummaryStatistics stats = new IntSummaryStatistics();
+        forEach(stats);
+        return stats;
+    }
+
+    /**
+     * 将流转换成数组
+     * 每段元素整体复制到结果数组中
+     * @return 数组
+     */
+    default int[] toArray() {
+        int[] result = new int[16];
+        int size = 0;
+        IntStream s = this;
+        while (s instanceof IntChunk c) {
+            int n = c.to - c.from;
+            if (size + n > result.length) {
+                result = Arrays.copyOf(result, Math.max(result.length * 2, size + n));
+            }
+            System.arraycopy(c.array(), c.from, result, size, n);
+            size += n;
+            s = c.rest();
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 截取流中前n个元素
+     * @param n 要截取的元素个数
+     * @return 流
+     */
+    default IntStream limit(int n) {
+        return n > 0 && this instanceof IntChunk c
+                ? c.take(n)
+                : empty();
+    }
+
+    /**
+     * 跳过流中的元素
+     * 逐段跳过，不会为被跳过的元素创建流节点，也不会计算被跳过的元素的map结果
+     * 迭代生成的元素依赖前一个元素，读取跳过位置之后的元素时仍然会计算同一段内被跳过的迭代结果
+     * @param n 跳过的个数
+     * @return 流
+     */
+    default IntStream skip(int n) {
+        IntStream s = this;
+        int i = n;
+        while (i > 0 && s instanceof IntChunk c) {
+            int k = Math.min(i, c.to - c.from);
+            s = c.drop(k);
+            i -= k;
+        }
+        return s;
+    }
+
+    /**
+     * 映射流中的元素
+     * @param mapper 映射器
+     * @return 流
+     */
+    default IntStream map(IntUnaryOperator mapper) {
+        return this instanceof IntChunk c
+                ? c.mapChunk(mapper)
+                : empty();
+    }
+
+    /**
+     * 将流中的元素映射成对象
+     * 每批元素在第一次访问其中的元素时一起映射
+     * @param mapper 映射器
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    default <U> Stream<U> mapToObj(IntFunction<U> mapper) {
+        return this instanceof IntChunk c
+                ? c.mapChunkToObj(mapper)
+                : Stream.empty();
+    }
+
+    /**
+     * 过滤流中的元素
+     * @param predicate 断言
+     * @return 流
+     */
+    default IntStream filter(IntPredicate predicate) {
+        // 逐批跳过没有满足条件的元素的部分，避免递归过深导致栈溢出
+        IntStream s = this;
+        while (s instanceof IntChunk c) {
+            IntStream filtered = c.filterChunk(predicate);
+            if (filtered != null) {
+                return filtered;
+            }
+            s = c.drop(Math.min(c.to - c.from, ChunkStream.CHUNK_SIZE));
+        }
+        return empty();
+    }
+
+    /**
+     * 转换成元素类型为long的流
+     * @return 流
+     */
+    default LongStream asLongStream() {
+        return this instanceof IntChunk c
+                ? c.chunkAsLong()
+                : LongStream.empty();
+    }
+
+    /**
+     * 转换成元素类型为double的流
+     * @return 流
+     */
+    default DoubleStream asDoubleStream() {
+        return this instanceof IntChunk c
+                ? c.chunkAsDouble()
+                : DoubleStream.empty();
+    }
+
+    /**
+     * 把流中的元素划分成窗口，每个窗口包含size个连续的元素，相邻窗口的起始位置相差step
+     * step小于size时为滑动窗口，等于size时为滚动窗口，大于size时跳过窗口之间的元素，末尾不完整的窗口会被丢弃
+     * 每个窗口是一个新的数组，第一次访问返回的流时才读取元素
+     * @param size 窗口大小
+     * @param step 步长
+     * @return 由窗口组成的流
+     */
+    default Stream<int[]> window(int size, int step) {
+        return Windows.window(this, size, step);
+    }
+
+    /**
+     * 计算每个大小为size的滑动窗口（步长为1）中元素的聚合值
+     * 使用双栈法维护聚合值，每个元素平均只参与常数次聚合操作，聚合操作需要满足结合律，不需要可逆
+     * 元素个数少于size时返回空流，判断时不会计算元素，聚合值在第一次被访问时才计算
+     * @param size 窗口大小
+     * @param identity 聚合操作的单位元
+     * @param accumulator 聚合操作
+     * @return 由聚合值组成的流
+     */
+    default IntStream slidingAggregate(int size, int identity, IntBinaryOperator accumulator) {
+        return Windows.slidingAggregate(this, size, identity, accumulator);
+    }
+
+    /**
+     * 将流中的元素装箱
+     * @return 流
+     */
+    default Stream<Integer> boxed() {
+        return mapToObj(Integer::valueOf);
+    }
+}
@@ -0,0 +1,446 @@
+package byx.project.stream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 连接操作的实现
+ * 哈希连接用构建侧的元素建立哈希表，再遍历探测侧的元素查找匹配的元素，
+ * 构建侧的元素超过内存上限时把两侧的元素按键的哈希值分区写入临时文件，再逐个分区进行连接，
+ * 构建侧仍然超过内存上限的分区用新的哈希种子继续划分，
+ * 写入分区时先在内存中缓冲，每次只打开一个临时文件追加写入，
+ * 两侧的元素都在第一次访问结果时才读取，写入临时文件时通过游标读取，不会在内存中保留已写入的元素
+ * 归并连接要求两侧都已按键排序，同时遍历两侧，只在内存中保留右侧键相同的一组元素
+ */
+final class Joins {
+    /**
+     * 元素个数未知时溢出到磁盘的分区个数
+     */
+    private static final int DEFAULT_PARTITIONS = 64;
+
+    /**
+     * 最多的分区个数
+     */
+    private static final int MAX_PARTITIONS = 1024;
+
+    /**
+     * 分区的最大层数，超过内存上限的分区最多继续划分这么多次
+     */
+    private static final int MAX_LEVELS = 4;
+
+    private Joins() {
+    }
+
+    /**
+     * 哈希连接
+     * 两侧元素个数都已知且左侧较少时以左侧为构建侧，结果按右侧的顺序排列，否则以右侧为构建侧，结果按左侧的顺序排列
+     * @param left 左侧的流
+     * @param right 右侧的流
+     * @param leftKey 左侧元素的键
+     * @param rightKey 右侧元素的键
+     * @param combiner 合并匹配的两个元素
+     * @param memoryLimit 构建侧在内存中最多保存的元素个数
+     * @return 连接结果组成的流
+     */
+    static <T, U, K, R> Stream<R> hashJoin(Stream<T> left, Stream<U> right,
+                                           Function<? super T, ? extends K> leftKey,
+                                           Function<? super U, ? extends K> rightKey,
+                                           BiFunction<? super T, ? super U, ? extends R> combiner,
+                                           int memoryLimit) {
+        // 选择构建侧和读取两侧的元素都在第一次访问结果时才进行，查询元素个数可能需要计算延迟创建的流
+        return new DeferredStream<>(() -> {
+            long leftSize = left.exactSize();
+            long rightSize = right.exactSize();
+            if (leftSize >= 0 && rightSize >= 0 && leftSize < rightSize) {
+                return join(right, left, rightKey, leftKey, (u, t) -> combiner.apply(t, u), memoryLimit);
+            }
+            return join(left, right, leftKey, rightKey, combiner::apply, memoryLimit);
+        });
+    }
+
+    /**
+     * 读取构建侧建立哈希表，构建侧超过内存上限时改为分区连接
+     */
+    private static <P, B, K, R> Stream<R> join(Stream<P> probe, Stream<B> build,
+                                               Function<? super P, ? extends K> probeKey,
+                                               Function<? super B, ? extends K> buildKey,
+                                               BiFunction<P, B, R> output, int memoryLimit) {
+        long buildSize = build.exactSize();
+        // 内存中的构建侧最多保存memoryLimit个元素
+        Map<K, List<B>> table = Grouping.newHashMap(buildSize < 0 ? -1 : (int) Math.min(buildSize, memoryLimit));
+        int n = 0;
+        Iterator<B> it = build.cursor();
+        while (it.hasNext()) {
+            if (n == memoryLimit) {
+                int partitions = buildSize < 0 ? DEFAULT_PARTITIONS : partitionCount(buildSize, memoryLimit);
+                // 通过游标读取探测侧，已经写入临时文件的元素不会因为探测侧的头部被引用而保留在内存中
+                return spillJoin(probe.cursor(), table, it, probeKey, buildKey, output, partitions, memoryLimit);
+            }
+            B b = it.next();
+            table.computeIfAbsent(buildKey.apply(b), k -> new ArrayList<>(1)).add(b);
+            n++;
+        }
+        return probe(probe, table, probeKey, output);
+    }
+
+    /**
+     * 在哈希表中查找探测侧每个元素匹配的元素
+     */
+    private static <P, B, K, R> Stream<R> probe(Stream<P> probe, Map<K, List<B>> table,
+                                                Function<? super P, ? extends K> probeKey, BiFunction<P, B, R> output) {
+        return probe.flatMap(p -> {
+            List<B> matches = table.get(probeKey.apply(p));
+            return matches == null ? Stream.empty() : Stream.fromCollection(matches).map(b -> output.apply(p, b));
+        });
+    }
+
+    /**
+     * 使每个分区的构建侧元素不超过内存上限的分区个数
+     */
+    private static int partitionCount(long size, int memoryLimit) {
+        return (int) Math.min(MAX_PARTITIONS, Math.max(2, size / memoryLimit * 2 + 1));
+    }
+
+    /**
+     * 把两侧的元素分区写入临时文件，再逐个分区进行连接
+     * @param probe 探测侧的元素
+     * @param table 已经读入内存的构建侧元素
+     * @param rest 构建侧剩余的元素
+     */
+    private static <P, B, K, R> Stream<R> spillJoin(Iterator<P> probe, Map<K, List<B>> table, Iterator<B> rest,
+                                                    Function<? super P, ? extends K> probeKey,
+                                                    Function<? super B, ? extends K> buildKey,
+                                                    BiFunction<P, B, R> output, int partitions, int memoryLimit) {
+        SpillFiles files = new SpillFiles();
+        Partitions builds = new Partitions(partitions, memoryLimit, files);
+        Partitions probes = new Partitions(partitions, memoryLimit, files);
+        try {
+            for (List<B> group : table.values()) {
+                for (B b : group) {
+                    builds.write(partition(buildKey.apply(b), partitions, 0), b);
+                }
+            }
+            table.clear();
+            while (rest.hasNext()) {
+                B b = rest.next();
+                builds.write(partition(buildKey.apply(b), partitions, 0), b);
+            }
+            builds.flushAll();
+            while (probe.hasNext()) {
+                P p = probe.next();
+                probes.write(partition(probeKey.apply(p), partitions, 0), p);
+            }
+            probes.flushAll();
+        } catch (IOException e) {
+            files.run();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException | Error e) {
+            files.run();
+            throw e;
+        }
+        return joinPartitions(new Spilled(files), builds, probes, probeKey, buildKey, output, memoryLimit, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * 逐个分区进行连接
+     * 构建侧超过内存上限的分区用下一层的哈希种子重新划分，所有元素都落入同一个子分区时说明无法继续划分，直接读入内存
+     * @param spilled 所有临时文件，返回的流引用它以免临时文件被提前删除
+     * @param level 当前分区使用的哈希种子
+     * @param parentCount 上一层分区中构建侧的元素个数
+     */
+    private static <P, B, K, R> Stream<R> joinPartitions(Spilled spilled, Partitions builds, Partitions probes,
+                                                         Function<? super P, ? extends K> probeKey,
+                                                         Function<? super B, ? extends K> buildKey,
+                                                         BiFunction<P, B, R> output, int memoryLimit,
+                                                         int level, long parentCount) {
+        return Stream.fromGenerator(0, i -> i + 1).limit(builds.size()).flatMap(i -> {
+            try {
+                long count = builds.count(i);
+                if (count > memoryLimit && count < parentCount && level + 1 < MAX_LEVELS) {
+                    return split(spilled, builds.read(i), probes.read(i), probeKey, buildKey, output, memoryLimit, level + 1, count);
+                }
+                Map<K, List<B>> partitionTable = Grouping.newHashMap((int) Math.min(count, Integer.MAX_VALUE));
+                Iterator<B> it = builds.read(i);
+                while (it.hasNext()) {
+                    B b = it.next();
+                    partitionTable.computeIfAbsent(buildKey.apply(b), k -> new ArrayList<>(1)).add(b);
+                }
+                return probe(Stream.fromIterator(probes.<P>read(i)), partitionTable, probeKey, output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 用新的哈希种子把一个分区的两侧元素重新划分成更小的分区
+     */
+    private static <P, B, K, R> Stream<R> split(Spilled spilled, Iterator<B> build, Iterator<P> probe,
+                                                Function<? super P, ? extends K> probeKey,
+                                                Function<? super B, ? extends K> buildKey,
+                                                BiFunction<P, B, R> output, int memoryLimit,
+                                                int level, long count) throws IOException {
+        int partitions = partitionCount(count, memoryLimit);
+        Partitions builds = new Partitions(partitions, memoryLimit, spilled.files);
+        Partitions probes = new Partitions(partitions, memoryLimit, spilled.files);
+        while (build.hasNext()) {
+            B b = build.next();
+            builds.write(partition(buildKey.apply(b), partitions, level), b);
+        }
+        builds.flushAll();
+        while (probe.hasNext()) {
+            P p = probe.next();
+            probes.write(partition(probeKey.apply(p), partitions, level), p);
+        }
+        probes.flushAll();
+        return joinPartitions(spilled, builds, probes, probeKey, buildKey, output, memoryLimit, level, count);
+    }
+
+    /**
+     * 键所在的分区，使用与HashMap不同的扰动，避免同一分区内的键在哈希表中聚集
+     * 不同的种子得到互不相关的划分，用于重新划分过大的分区
+     */
+    private static int partition(Object key, int partitions, int seed) {
+        int h = Objects.hashCode(key) + seed * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, partitions);
+    }
+
+    /**
+     * 一侧元素的各个分区
+     * 元素先放入分区在内存中的缓冲区，所有缓冲区中的元素总数达到上限时把最大的缓冲区追加写入该分区的临时文件，
+     * 因此同一时刻最多只打开一个临时文件，分区的临时文件在第一次写入时才创建
+     */
+    private static final class Partitions {
+        private final SpillFile[] files;
+        private final List<List<Object>> buffers;
+        private final int capacity;
+        private final SpillFiles spillFiles;
+        private int buffered;
+
+        Partitions(int partitions, int capacity, SpillFiles spillFiles) {
+            this.files = new SpillFile[partitions];
+            this.buffers = new ArrayList<>(Collections.nCopies(partitions, null));
+            this.capacity = capacity;
+            this.spillFiles = spillFiles;
+        }
+
+        int size() {
+            return files.length;
+        }
+
+        void write(int i, Object e) throws IOException {
+            List<Object> buffer = buffers.get(i);
+            if (buffer == null) {
+                buffer = new ArrayList<>();
+                buffers.set(i, buffer);
+            }
+            buffer.add(e);
+            if (++buffered >= capacity) {
+                int largest = i;
+                for (int j = 0; j < buffers.size(); j++) {
+                    if (buffers.get(j) != null && buffers.get(j).size() > buffers.get(largest).size()) {
+                        largest = j;
+                    }
+                }
+                flush(largest);
+            }
+        }
+
+        private void flush(int i) throws IOException {
+            List<Object> buffer = buffers.get(i);
+            if (buffer == null) {
+                return;
+            }
+            if (files[i] == null) {
+                files[i] = spillFiles.create();
+            }
+            files[i].append(buffer);
+            buffered -= buffer.size();
+            buffers.set(i, null);
+        }
+
+        /**
+         * 写入所有缓冲区中的元素
+         */
+        void flushAll() throws IOException {
+            for (int i = 0; i < files.length; i++) {
+                flush(i);
+            }
+        }
+
+        /**
+         * 第i个分区的元素个数，调用flushAll之后有效
+         */
+        long count(int i) {
+            return files[i] == null ? 0 : files[i].count();
+        }
+
+        /**
+         * 读取第i个分区的元素，只能调用一次，调用flushAll之后有效
+         */
+        <T> Iterator<T> read(int i) throws IOException {
+            return files[i] == null ? Collections.emptyIterator() : files[i].read();
+        }
+    }
+
+    /**
+     * 连接过程中创建的所有临时文件，清理时删除所有文件
+     */
+    private static final class SpillFiles implements Runnable {
+        private final List<SpillFile> files = new ArrayList<>();
+
+        synchronized SpillFile create() throws IOException {
+            SpillFile file = SpillFile.createAppendable("stream-join-");
+            files.add(file);
+            return file;
+        }
+
+        @Override
+        public synchronized void run() {
+            for (SpillFile file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * 连接结果组成的流持有的临时文件，不再被引用时删除所有文件
+     */
+    private static final class Spilled {
+        final SpillFiles files;
+
+        Spilled(SpillFiles files) {
+            this.files = files;
+            // 清理操作只引用files，不会阻止当前对象被回收
+            Threads.CLEANER.register(this, files);
+        }
+    }
+
+    /**
+     * 归并连接
+     * @param left 按键排序的左侧的流
+     * @param right 按键排序的右侧的流
+     * @param leftKey 左侧元素的键
+     * @param rightKey 右侧元素的键
+     * @param keyComparator 键的比较器
+     * @param combiner 合并匹配的两个元素
+     * @return 连接结果组成的流
+     */
+    static <T, U, K, R> Stream<R> mergeJoin(Stream<T> left, Stream<U> right,
+                                            Function<? super T, ? extends K> leftKey,
+                                            Function<? super U, ? extends K> rightKey,
+                                            Comparator<? super K> keyComparator,
+                                            BiFunction<? super T, ? super U, ? extends R> combiner) {
+        // 第一次访问结果时才开始读取两侧的元素
+        return new DeferredStream<>(() -> Stream.fromIterator(
+                new MergeJoiner<>(left.iterator(), right.iterator(), leftKey, rightKey, keyComparator, combiner)));
+    }
+
+    /**
+     * 同时遍历两侧的元素，对于左侧的每个元素，依次与右侧键相同的一组元素合并
+     */
+    private static final class MergeJoiner<T, U, K, R> implements Iterator<R> {
+        private final Iterator<T> left;
+        private final Iterator<U> right;
+        private final Function<? super T, ? extends K> leftKey;
+        private final Function<? super U, ? extends K> rightKey;
+        private final Comparator<? super K> keyComparator;
+        private final BiFunction<? super T, ? super U, ? extends R> combiner;
+
+        /**
+         * 右侧已读取但尚未处理的元素
+         */
+        private U peek;
+        private boolean hasPeek;
+
+        /**
+         * 右侧键为groupKey的一组元素
+         */
+        private final List<U> group = new ArrayList<>();
+        private K groupKey;
+
+        /**
+         * 左侧当前的元素及下一个与之合并的右侧元素在组内的位置
+         */
+        private T current;
+        private int index;
+        private boolean ready;
+
+        MergeJoiner(Iterator<T> left, Iterator<U> right,
+                    Function<? super T, ? extends K> leftKey, Function<? super U, ? extends K> rightKey,
+                    Comparator<? super K> keyComparator, BiFunction<? super T, ? super U, ? extends R> combiner) {
+            this.left = left;
+            this.right = right;
+            this.leftKey = leftKey;
+            this.rightKey = rightKey;
+            this.keyComparator = keyComparator;
+            this.combiner = combiner;
+            this.index = Integer.MAX_VALUE;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!ready) {
+                if (index < group.size()) {
+                    ready = true;
+                    break;
+                }
+                if (!left.hasNext()) {
+                    return false;
+                }
+                current = left.next();
+                K key = leftKey.apply(current);
+                index = 0;
+                // 左侧的键与上一组相同时重用这一组
+                if (!group.isEmpty() && keyComparator.compare(key, groupKey) == 0) {
+                    continue;
+                }
+                group.clear();
+                advanceRight(key);
+            }
+            return true;
+        }
+
+        /**
+         * 跳过右侧键小于key的元素，并读取键等于key的一组元素
+         */
+        private void advanceRight(K key) {
+            while (true) {
+                if (!hasPeek) {
+                    if (!right.hasNext()) {
+                        return;
+                    }
+                    peek = right.next();
+                    hasPeek = true;
+                }
+                int c = keyComparator.compare(rightKey.apply(peek), key);
+                if (c > 0) {
+                    return;
+                }
+                if (c == 0) {
+                    group.add(peek);
+                    groupKey = key;
+                }
+                hasPeek = false;
+                peek = null;
+            }
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("当前流已结束");
+            }
+            ready = false;
+            return combiner.apply(current, group.get(index++));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package byx.project.stream;
+
+import java.util.function.Supplier;
+
+/**
+ * 延迟计算并缓存结果的值
+ * @param <T> 值的类型
+ */
+final class Lazy<T> implements Supplier<T> {
+    private Supplier<T> supplier;
+    private T value;
+
+    Lazy(Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * 创建已经计算好的值
+     * @param value 值
+     * @param <T> 值的类型
+     * @return Lazy
+     */
+    static <T> Lazy<T> of(T value) {
+        Lazy<T> lazy = new Lazy<>(null);
+        lazy.value = value;
+        return lazy;
+    }
+
+    @Override
+    public T get() {
+        if (supplier != null) {
+            value = supplier.get();
+            supplier = null;
+        }
+        return value;
+    }
+
+    /**
+     * 获取不会缓存计算结果的工厂方法
+     * @return 工厂方法
+     */
+    Supplier<T> unevaluated() {
+        Supplier<T> s = supplier;
+        if (s != null) {
+            return s;
+        }
+        T v = value;
+        return () -> v;
+    }
+}
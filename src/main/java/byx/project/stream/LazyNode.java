@@ -0,0 +1,105 @@
+package byx.project.stream;
+
+/**
+ * 按需求值的流节点
+ * first和remain在第一次被访问时才计算，开启缓存时计算结果会被保存下来，之后的访问直接返回缓存值
+ * first和remain是final方法，遍历流时可以直接调用，不需要经过接口分派
+ * @param <T> 元素类型
+ */
+abstract sealed class LazyNode<T> implements Stream<T>
+        permits Cons, MapNode, LimitNode, FilterNode, ConcatNode, GeneratorNode, ZipNode, IndexNode {
+    private T first;
+    private boolean firstEvaluated;
+    private Stream<T> remain;
+    private final boolean memoized;
+
+    LazyNode(boolean memoized) {
+        this.memoized = memoized;
+    }
+
+    /**
+     * 创建第一个元素已知的节点
+     */
+    LazyNode(T first, boolean memoized) {
+        this.first = first;
+        this.firstEvaluated = true;
+        this.memoized = memoized;
+    }
+
+    /**
+     * 计算第一个元素，创建时已经给出第一个元素的节点直接返回该元素
+     */
+    abstract T computeFirst();
+
+    /**
+     * 计算剩余元素组成的流
+     */
+    abstract Stream<T> computeRemain();
+
+    /**
+     * first和remain都计算完成后调用，释放计算过程中用到的对象
+     */
+    abstract void release();
+
+    /**
+     * 创建不缓存计算结果的副本，副本中引用的源流也转换成不缓存计算结果的流
+     * 只会在remain尚未计算时调用
+     * @return 副本，返回null时使用通用的方式创建
+     */
+    LazyNode<T> unmemoizedCopy() {
+        return null;
+    }
+
+    @Override
+    public final T first() {
+        if (firstEvaluated) {
+            return first;
+        }
+        if (!memoized) {
+            return computeFirst();
+        }
+        first = computeFirst();
+        firstEvaluated = true;
+        if (remain != null) {
+            release();
+        }
+        return first;
+    }
+
+    @Override
+    public final Stream<T> remain() {
+        if (!memoized) {
+            return computeRemain().unmemoized();
+        }
+        if (remain == null) {
+            remain = computeRemain();
+            if (firstEvaluated) {
+                release();
+            }
+        }
+        return remain;
+    }
+
+    @Override
+    public final boolean memoized() {
+        return memoized;
+    }
+
+    @Override
+    public final Stream<T> unmemoized() {
+        if (!memoized) {
+            return this;
+        }
+        if (remain == null) {
+            LazyNode<T> copy = unmemoizedCopy();
+            if (copy != null) {
+                return copy;
+            }
+        }
+        // 不在当前节点上缓存剩余的流
+        return new Cons<>(this::first, () -> {
+            Stream<T> r = remain;
+            return r != null ? r : computeRemain();
+        }, false);
+    }
+}
@@ -0,0 +1,37 @@
+package byx.project.stream;
+
+/**
+ * limit操作生成的流节点
+ * @param <T> 元素类型
+ */
+final class LimitNode<T> extends LazyNode<T> {
+    private Stream<T> source;
+    private final int n;
+
+    LimitNode(Stream<T> source, int n, boolean memoized) {
+        super(memoized);
+        this.source = source;
+        this.n = n;
+    }
+
+    @Override
+    T computeFirst() {
+        return source.first();
+    }
+
+    @Override
+    Stream<T> computeRemain() {
+        // 截取的是最后一个元素时不再计算源流剩余的部分
+        return n == 1 ? Stream.empty() : source.remain().limit(n - 1);
+    }
+
+    @Override
+    LazyNode<T> unmemoizedCopy() {
+        return new LimitNode<>(source.unmemoized(), n, false);
+    }
+
+    @Override
+    void release() {
+        source = null;
+    }
+}
@@ -0,0 +1,274 @@
+package byx.project.stream;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 键为long的哈希表，使用开放寻址和线性探测，键不会被装箱
+ * 遍历顺序不确定
+ * @param <V> 值的类型
+ */
+public final class LongHashMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+     * 创建空的哈希表
+     */
+    public LongHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * 创建空的哈希表，预先分配能容纳expectedSize个键的空间
+     * @param expectedSize 预计的键的个数
+     */
+    public LongHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * 装载因子不超过1/2时需要的容量
+     */
+    private static int capacityFor(int expectedSize) {
+        long cap = Math.max(MIN_CAPACITY, (long) expectedSize * 2);
+        return (int) Math.min(1 << 30, Long.highestOneBit(cap - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 查找键所在的位置
+     * @return 键所在的位置，不存在时返回应该插入的位置的相反数减一
+     */
+    private int find(long key) {
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+    /**
+     * 键值对的个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 是否为空
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 是否包含键
+     * @param key 键
+     * @return 是否包含
+     */
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * 获取键对应的值
+     * @param key 键
+     * @return 值，不存在时返回null
+     */
+    public V get(long key) {
+        return getOrDefault(key, null);
+    }
+
+    /**
+     * 获取键对应的值
+     * @param key 键
+     * @param defaultValue 默认值
+     * @return 值，不存在时返回默认值
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        int i = find(key);
+        return i >= 0 ? (V) values[i] : defaultValue;
+    }
+
+    /**
+     * 设置键对应的值
+     * @param key 键
+     * @param value 值
+     * @return 原来的值，不存在时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        int i = find(key);
+        if (i >= 0) {
+            V old = (V) values[i];
+            values[i] = value;
+            return old;
+        }
+        insert(-i - 1, key, value);
+        return null;
+    }
+
+    /**
+     * 获取键对应的值，不存在时计算并保存
+     * @param key 键
+     * @param mapping 计算值的函数
+     * @return 值
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long key, LongFunction<? extends V> mapping) {
+        int i = find(key);
+        if (i >= 0) {
+            return (V) values[i];
+        }
+        V value = mapping.apply(key);
+        insert(-i - 1, key, value);
+        return value;
+    }
+
+    private void insert(int i, long key, Object value) {
+        keys[i] = key;
+        values[i] = value;
+        used[i] = true;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int j = -find(oldKeys[i]) - 1;
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+                used[j] = true;
+            }
+        }
+    }
+
+    /**
+     * 获取所有键
+     * @return 键组成的数组
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 遍历所有键值对
+     * @param consumer 遍历操作，参数依次为值和键
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjLongConsumer<? super V> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                consumer.accept((V) values[i], keys[i]);
+            }
+        }
+    }
+
+    /**
+     * 用函数的结果替换所有的值
+     * @param function 函数
+     */
+    void replaceAll(Function<Object, Object> function) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                values[i] = function.apply(values[i]);
+            }
+        }
+    }
+
+    /**
+     * 转换成键被装箱的Map
+     * @return Map
+     */
+    public Map<Long, V> toMap() {
+        Map<Long, V> map = new HashMap<>(size * 2);
+        forEach((v, k) -> map.put(k, v));
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * 与toMap()的结果相等的判断方式相同，直接在两个哈希表中查找，不会装箱
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LongHashMap<?> other) || other.size != size) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                int j = other.find(keys[i]);
+                if (j < 0 || !Objects.equals(values[i], other.values[j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与toMap()的结果的哈希值相同
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                h += Long.hashCode(keys[i]) ^ Objects.hashCode(values[i]);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * 内部数组的大小
+     */
+    int capacity() {
+        return keys.length;
+    }
+}
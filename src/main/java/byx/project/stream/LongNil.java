@@ -0,0 +1,21 @@
+package byx.project.stream;
+
+/**
+ * 空的LongStream，同时标志着流的结束
+ */
+final class LongNil implements LongStream {
+    @Override
+    public long first() {
+        throw new IllegalStateException("当前流已结束");
+    }
+
+    @Override
+    public LongStream remain() {
+        throw new IllegalStateException("当前流已结束");
+    }
+
+    @Override
+    public boolean end() {
+        return true;
+    }
+}
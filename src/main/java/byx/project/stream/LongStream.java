@@ -0,0 +1,335 @@
+package byx.project.stream;
+
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.function.*;
+
+/**
+ * 元素类型为long的流，避免装箱
+ * 流由long数组中的一段段元素组成，聚合操作直接遍历数组，不会为每个元素创建流节点，
+ * map和filter每次处理一批元素，map得到的元素在第一次被访问时才计算
+ */
+public sealed interface LongStream permits LongChunk, LongNil {
+    /**
+     * 流中第一个元素
+     */
+    long first();
+
+    /**
+     * 剩余元素组成的流
+     */
+    LongStream remain();
+
+    /**
+     * 创建流
+     * first和remain最多只会被计算一次
+     * @param firstSupplier 第一个元素的工厂
+     * @param remainSupplier 剩余元素组成的流的工厂
+     * @return 流
+     */
+    static LongStream create(LongSupplier firstSupplier, Supplier<LongStream> remainSupplier) {
+        return LongChunk.single(firstSupplier, remainSupplier);
+    }
+
+    LongStream EMPTY = new LongNil();
+
+    /**
+     * 获取空流
+     */
+    static LongStream empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 判断当前流是否结束
+     */
+    default boolean end() {
+        return this == EMPTY;
+    }
+
+    /**
+     * 从数组生成流
+     * @param arr 数组
+     * @return 流
+     */
+    static LongStream of(long... arr) {
+        return fromArray(0, arr);
+    }
+
+    /**
+     * 从数组和起始索引生成流
+     * @param startIndex 起始索引
+     * @param arr 数组
+     * @return 流
+     */
+    static LongStream fromArray(int startIndex, long[] arr) {
+        return LongChunk.of(arr, startIndex, arr.length);
+    }
+
+    /**
+     * 生成区间[start, end)内的整数组成的流
+     * @param start 起始值（包含）
+     * @param end 结束值（不包含）
+     * @return 流
+     */
+    static LongStream range(long start, long end) {
+        return LongChunk.range(start, end);
+    }
+
+    /**
+     * 迭代生成流
+     * @param initial 初始值
+     * @param generator 生成器
+     * @return 流
+     */
+    static LongStream iterate(long initial, LongUnaryOperator generator) {
+        return LongChunk.iterate(initial, generator);
+    }
+
+    /**
+     * 遍历流中所有元素
+     * @param consumer 遍历操作
+     */
+    default void forEach(LongConsumer consumer) {
+        LongStream s = this;
+        while (s instanceof LongChunk c) {
+            for (int i = c.from; i < c.to; i++) {
+                consumer.accept(c.element(i));
+            }
+            s = c.rest();
+        }
+    }
+
+    /**
+     * 流的聚合操作
+     * @param initial 初始值
+     * @param accumulator 聚合操作
+     * @return 聚合结果
+     */
+    default long reduce(long initial, LongBinaryOperator accumulator) {
+        long result = initial;
+        LongStream s = this;
+        while (s instanceof LongChunk c) {
+            long[] arr = c.array();
+            for (int i = c.from; i < c.to; i++) {
+                result = accumulator.applyAsLong(result, arr[i]);
+            }
+            s = c.rest();
+        }
+        return result;
+    }
+
+    /**
+     * 获取流中元素个数
+     * 不会计算流中的元素
+     * @return 元素个数
+     */
+    default int count() {
+        int cnt = 0;
+        LongStream s = this;
+        while (s instanceof LongChunk c) {
+            cnt += c.to - c.from;
+            s = c.rest();
+        }
+        return cnt;
+    }
+
+    /**
+     * 对流中元素求和
+     * @return 元素之和
+     */
+    default long sum() {
+        long sum = 0;
+        LongStream s = this;
+        while (s instanceof LongChunk c) {
+            long[] arr = c.array();
+            for (int i = c.from; i < c.to; i++) {
+                sum += arr[i];
+            }
+            s = c.rest();
+        }
+        return sum;
+    }
+
+    /**
+     * 获取流中最小的元素
+     * @return 最小元素，流为空时返回空值
+     */
+    default OptionalLong min() {
+        return end() ? OptionalLong.empty() : OptionalLong.of(remain().reduce(first(), Math::min));
+    }
+
+    /**
+     * 获取流中最大的元素
+     * @return 最大元素，流为空时返回空值
+     */
+    default OptionalLong max() {
+        return end() ? OptionalLong.empty() : OptionalLong.of(remain().reduce(first(), Math::max));
+    }
+
+    /**
+     * 获取流中元素的平均值
+     * @return 平均值，流为空时返回空值
+     */
+    default OptionalDouble average() {
+        long sum = 0;
+        int cnt = 0;
+        LongStream s = this;
+        while (s instanceof LongChunk c) {
+            long[] arr = c.array();
+            for (int i = c.from; i < c.to; i++) {
+                sum += arr[i];
+            }
+            cnt += c.to - c.from;
+            s = c.rest();
+        }
+        return cnt == 0 ? OptionalDouble.empty() : OptionalDouble.of((double) sum / cnt);
+    }
+
+    /**
+     * 在一次遍历中统计元素的个数、总和、最小值、最大值和平均值
+     * @return 统计结果
+     */
+    default LongSummaryStatistics summaryStatistics() {
+        LongSummaryStatistics stats = new LongSummaryStatistics();
+        forEach(stats);
+        return stats;
+    }
+
+    /**
+     * 将流转换成数组
+     * 每段元素整体复制到结果数组中
+     * @return 数组
+     */
+    default long[] toArray() {
+        long[] result = new long[16];
+        int size = 0;
+        LongStream s = this;
+        while (s instanceof LongChunk c) {
+            int n = c.to - c.from;
+            if (size + n > result.length) {
+                result = Arrays.copyOf(result, Math.max(result.length * 2, size + n));
+            }
+            System.arraycopy(c.array(), c.from, result, size, n);
+            size += n;
+            s = c.rest();
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 截取流中前n个元素
+     * @param n 要截取的元素个数
+     * @return 流
+     */
+    default LongStream limit(int n) {
+        return n > 0 && this instanceof LongChunk c
+                ? c.take(n)
+                : empty();
+    }
+
+    /**
+     * 跳过流中的元素
+     * 逐段跳过，不会为被跳过的元素创建流节点，也不会计算被跳过的元素的map结果
+     * 迭代生成的元素依赖前一个元素，读取跳过位置之后的元素时仍然会计算同一段内被跳过的迭代结果
+     * @param n 跳过的个数
+     * @return 流
+     */
+    default LongStream skip(int n) {
+        LongStream s = this;
+        int i = n;
+        while (i > 0 && s instanceof LongChunk c) {
+            int k = Math.min(i, c.to - c.from);
+            s = c.drop(k);
+            i -= k;
+        }
+        return s;
+    }
+
+    /**
+     * 映射流中的元素
+     * @param mapper 映射器
+     * @return 流
+     */
+    default LongStream map(LongUnaryOperator mapper) {
+        return this instanceof LongChunk c
+                ? c.mapChunk(mapper)
+                : empty();
+    }
+
+    /**
+     * 将流中的元素映射成对象
+     * 每批元素在第一次访问其中的元素时一起映射
+     * @param mapper 映射器
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    default <U> Stream<U> mapToObj(LongFunction<U> mapper) {
+        return this instanceof LongChunk c
+                ? c.mapChunkToObj(mapper)
+                : Stream.empty();
+    }
+
+    /**
+     * 过滤流中的元素
+     * @param predicate 断言
+     * @return 流
+     */
+    default LongStream filter(LongPredicate predicate) {
+        // 逐批跳过没有满足条件的元素的部分，避免递归过深导致栈溢出
+        LongStream s = this;
+        while (s instanceof LongChunk c) {
+            LongStream filtered = c.filterChunk(predicate);
+            if (filtered != null) {
+                return filtered;
+            }
+            s = c.drop(Math.min(c.to - c.from, ChunkStream.CHUNK_SIZE));
+        }
+        return empty();
+    }
+
+    /**
+     * 转换成元素类型为double的流
+     * @return 流
+     */
+    default DoubleStream asDoubleStream() {
+        return this instanceof LongChunk c
+                ? c.chunkAsDouble()
+                : DoubleStream.empty();
+    }
+
+    /**
+     * 把流中的元素划分成窗口，每个窗口包含size个连续的元素，相邻窗口的起始位置相差step
+     * step小于size时为滑动窗口，等于size时为滚动窗口，大于size时跳过窗口之间的元素，末尾不完整的窗口会被丢弃
+     * 每个窗口是一个新的数组，第一次访问返回的流时才读取元素
+     * @param size 窗口大小
+     * @param step 步长
+     * @return 由窗口组成的流
+     */
+    default Stream<long[]> window(int size, int step) {
+        return Windows.window(this, size, step);
+    }
+
+    /**
+     * 计算每个大小为size的滑动窗口（步长为1）中元素的聚合值
+     * 使用双栈法维护聚合值，每个元素平均只参与常数次聚合操作，聚合操作需要满足结合律，不需要可逆
+     * 元素个数少于size时返回空流，判断时不会计算元素，聚合值在第一次被访问时才计算
+     * @param size 窗口大小
+     * @param identity 聚合操作的单位元
+     * @param accumulator 聚合操作
+     * @return 由聚合值组成的流
+     */
+    default LongStream slidingAggregate(int size, long identity, LongBinaryOperator accumulator) {
+        return Windows.slidingAggregate(this, size, identity, accumulator);
+    }
+
+    /**
+     * 将流中的元素装箱
+     * @return 流
+     */
+    default Stream<Long> boxed() {
+        return mapToObj(Long::valueOf);
+    }
+}
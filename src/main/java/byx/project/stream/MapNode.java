@@ -0,0 +1,40 @@
+package byx.project.stream;
+
+import java.util.function.Function;
+
+/**
+ * map操作生成的流节点
+ * @param <S> 源流的元素类型
+ * @param <T> 元素类型
+ */
+final class MapNode<S, T> extends LazyNode<T> {
+    private Stream<S> source;
+    private Function<S, T> mapper;
+
+    MapNode(Stream<S> source, Function<S, T> mapper, boolean memoized) {
+        super(memoized);
+        this.source = source;
+        this.mapper = mapper;
+    }
+
+    @Override
+    T computeFirst() {
+        return mapper.apply(source.first());
+    }
+
+    @Override
+    Stream<T> computeRemain() {
+        return source.remain().map(mapper);
+    }
+
+    @Override
+    LazyNode<T> unmemoizedCopy() {
+        return new MapNode<>(source.unmemoized(), mapper, false);
+    }
+
+    @Override
+    void release() {
+        source = null;
+        mapper = null;
+    }
+}
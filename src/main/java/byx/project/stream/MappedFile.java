@@ -0,0 +1,226 @@
+package byx.project.stream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 通过内存映射读取的文件
+ * 文件按不超过segmentSize的区域依次映射，不会把整个文件读入堆内存，可以读取超过2GB的文件
+ */
+final class MappedFile {
+    /**
+     * 默认每次映射的最大字节数
+     */
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    private final Path path;
+    private final long size;
+    private final int segmentSize;
+
+    MappedFile(Path path, int segmentSize) {
+        this.path = path;
+        this.segmentSize = segmentSize;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 文件的字节数
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * 以只读方式映射文件的一个区域
+     * @param position 起始位置
+     * @param length 字节数
+     * @return 映射区域
+     */
+    private MappedByteBuffer map(long position, long length) {
+        // 通道关闭后映射区域仍然有效
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 获取按行读取文件的Spliterator，行以\n或\r\n结尾
+     * @param converter 把一行的字节（不包含换行符）转换成元素
+     * @param <T> 元素类型
+     * @return Spliterator
+     */
+    <T> Spliterator<T> lines(Function<ByteBuffer, T> converter) {
+        return new LineSpliterator<>(converter, 0, size);
+    }
+
+    /**
+     * 获取按固定长度的记录读取文件的Spliterator，末尾不足一条记录的字节会被忽略
+     * @param recordSize 每条记录的字节数
+     * @return Spliterator
+     */
+    Spliterator<ByteBuffer> records(int recordSize) {
+        return new RecordSpliterator(recordSize, 0, size / recordSize);
+    }
+
+    /**
+     * 读取起始位置在[pos, end)内的行，拆分时按换行符的位置对齐
+     */
+    private final class LineSpliterator<T> implements Spliterator<T> {
+        /**
+         * 区域长度小于该值时不再拆分
+         */
+        private static final int MIN_SPLIT_SIZE = 1 << 16;
+
+        private final Function<ByteBuffer, T> converter;
+        private long pos;
+        private final long end;
+        private ByteBuffer window;
+        private long windowStart;
+
+        LineSpliterator(Function<ByteBuffer, T> converter, long pos, long end) {
+            this.converter = converter;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        /**
+         * 在[from, limit)中查找换行符
+         * @return 换行符的位置，没有找到时返回-1
+         */
+        private long indexOfNewline(long from, long limit) {
+            while (from < limit) {
+                if (window == null || from < windowStart || from >= windowStart + window.limit()) {
+                    window = map(from, Math.min(segmentSize, size - from));
+                    windowStart = from;
+                }
+                int start = (int) (from - windowStart);
+                int stop = (int) Math.min(window.limit(), limit - windowStart);
+                for (int i = start; i < stop; i++) {
+                    if (window.get(i) == '\n') {
+                        return windowStart + i;
+                    }
+                }
+                from = windowStart + stop;
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (pos >= end) {
+                return false;
+            }
+            long newline = indexOfNewline(pos, size);
+            long lineEnd = newline < 0 ? size : newline;
+            // 保证整行都在当前映射区域内
+            if (pos < windowStart || lineEnd > windowStart + window.limit()) {
+                if (lineEnd - pos > segmentSize) {
+                    throw new IllegalStateException("行的长度超过了映射区域的大小");
+                }
+                window = map(pos, Math.min(segmentSize, size - pos));
+                windowStart = pos;
+            }
+            long contentEnd = lineEnd > pos && window.get((int) (lineEnd - 1 - windowStart)) == '\r' ? lineEnd - 1 : lineEnd;
+            ByteBuffer line = window.slice((int) (pos - windowStart), (int) (contentEnd - pos));
+            pos = newline < 0 ? size : newline + 1;
+            action.accept(converter.apply(line));
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (end - pos < MIN_SPLIT_SIZE) {
+                return null;
+            }
+            long newline = indexOfNewline(pos + (end - pos) / 2, end);
+            if (newline < 0 || newline + 1 >= end) {
+                return null;
+            }
+            Spliterator<T> prefix = new LineSpliterator<>(converter, pos, newline + 1);
+            pos = newline + 1;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            // 行数不超过剩余的字节数
+            return end - pos;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * 读取序号在[index, end)内的记录
+     */
+    private final class RecordSpliterator implements Spliterator<ByteBuffer> {
+        private final int recordSize;
+        private final int recordsPerWindow;
+        private long index;
+        private final long end;
+        private ByteBuffer window;
+        private long windowFirst;
+        private long windowCount;
+
+        RecordSpliterator(int recordSize, long index, long end) {
+            this.recordSize = recordSize;
+            this.recordsPerWindow = Math.max(1, segmentSize / recordSize);
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ByteBuffer> action) {
+            if (index >= end) {
+                return false;
+            }
+            if (window == null || index < windowFirst || index >= windowFirst + windowCount) {
+                windowFirst = index;
+                windowCount = Math.min(recordsPerWindow, end - index);
+                window = map(index * recordSize, windowCount * recordSize);
+            }
+            ByteBuffer record = window.slice((int) ((index - windowFirst) * recordSize), recordSize);
+            index++;
+            action.accept(record);
+            return true;
+        }
+
+        @Override
+        public Spliterator<ByteBuffer> trySplit() {
+            long mid = index + (end - index) / 2;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<ByteBuffer> prefix = new RecordSpliterator(recordSize, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package byx.project.stream;
+
+/**
+ * 空流，同时标志着流的结束
+ * @param <T> 元素类型
+ */
+final class Nil<T> implements Stream<T> {
+    @Override
+    public T first() {
+        throw new IllegalStateException("当前流已结束");
+    }
+
+    @Override
+    public Stream<T> remain() {
+        throw new IllegalStateException("当前流已结束");
+    }
+
+    @Override
+    public boolean end() {
+        return true;
+    }
+
+    @Override
+    public boolean memoized() {
+        return true;
+    }
+}
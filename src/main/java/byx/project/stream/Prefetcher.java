@@ -0,0 +1,140 @@
+package byx.project.stream;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 在后台线程中预先计算流中的元素，放入有界缓冲区
+ * 缓冲区满时后台线程等待消费，调用close或迭代器不再被引用时后台线程会被停止
+ * @param <T> 元素类型
+ */
+final class Prefetcher<T> implements Iterator<T> {
+    private static final Object END = new Object();
+    private static final Object NULL = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Producer<T> producer;
+    private Object next;
+    private volatile boolean closed;
+
+    private Prefetcher(Stream<T> source, int bufferSize) {
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.producer = new Producer<>(source.iterator(), queue);
+        // 清理操作只引用producer，不会阻止当前对象被回收
+        Threads.CLEANER.register(this, producer::cancel);
+        producer.start();
+    }
+
+    /**
+     * 在后台线程中计算流中的元素
+     * 后台线程立即开始计算，第一次访问返回的流时才等待第一个元素，关闭返回的流时停止后台线程
+     * @param source 源流
+     * @param bufferSize 缓冲区大小
+     * @param <T> 元素类型
+     * @return 由预先计算的元素组成的流
+     */
+    static <T> Stream<T> prefetch(Stream<T> source, int bufferSize) {
+        Prefetcher<T> prefetcher = new Prefetcher<>(source, bufferSize);
+        return new DeferredStream<>(() -> Cons.fromIterator(prefetcher), prefetcher::close);
+    }
+
+    /**
+     * 停止后台线程，之后不能再读取尚未读取的元素
+     */
+    void close() {
+        closed = true;
+        producer.cancel();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            if (closed) {
+                throw new IllegalStateException("流已关闭");
+            }
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待预取的元素时被中断", e);
+            }
+        }
+        if (next instanceof Failure f) {
+            // 源流计算时抛出的异常在消费者线程中重新抛出
+            if (f.cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (f.cause instanceof Error err) {
+                throw err;
+            }
+            throw new IllegalStateException(f.cause);
+        }
+        return next != END;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("当前流已结束");
+        }
+        Object e = next;
+        next = null;
+        return e == NULL ? null : (T) e;
+    }
+
+    /**
+     * 源流计算时抛出的异常
+     */
+    private record Failure(Throwable cause) {}
+
+    /**
+     * 在后台线程中遍历源流，把元素放入缓冲区
+     */
+    private static final class Producer<T> implements Runnable {
+        private final Iterator<T> iterator;
+        private final BlockingQueue<Object> queue;
+        private final Thread thread;
+        private volatile boolean cancelled;
+
+        Producer(Iterator<T> iterator, BlockingQueue<Object> queue) {
+            this.iterator = iterator;
+            this.queue = queue;
+            this.thread = Threads.newThread(this, "stream-prefetch");
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        /**
+         * 停止计算，后台线程在缓冲区上等待时会被中断
+         */
+        void cancel() {
+            cancelled = true;
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            try {
+                try {
+                    while (!cancelled && iterator.hasNext()) {
+                        T e = iterator.next();
+                        queue.put(e == null ? NULL : e);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Throwable t) {
+                    queue.put(new Failure(t));
+                    return;
+                }
+                queue.put(END);
+            } catch (InterruptedException e) {
+                // 消费者已经不再需要元素
+            }
+        }
+    }
+}
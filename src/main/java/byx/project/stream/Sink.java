@@ -0,0 +1,34 @@
+package byx.project.stream;
+
+import java.util.function.Consumer;
+
+/**
+ * 推模式下接收流中元素的操作
+ * @param <T> 元素类型
+ */
+interface Sink<T> extends Consumer<T> {
+    /**
+     * 是否不再需要接收更多的元素
+     */
+    default boolean cancellationRequested() {
+        return false;
+    }
+
+    /**
+     * 将元素处理后传递给下游的Sink
+     * @param <T> 元素类型
+     * @param <U> 下游的元素类型
+     */
+    abstract class Chained<T, U> implements Sink<T> {
+        protected final Sink<U> downstream;
+
+        Chained(Sink<U> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            return downstream.cancellationRequested();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package byx.project.stream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 通过Java序列化保存元素的临时文件，用于外部排序和连接操作
+ * 先依次写入元素，调用finish之后可以读取，读取完所有元素或调用delete后关闭并删除文件
+ * 需要同时写入很多文件时可以用createAppendable创建，通过append分批写入，写入之间不保持文件打开
+ */
+final class SpillFile {
+    /**
+     * 每写入这么多个元素重置一次ObjectOutputStream，避免其记录已写入的对象
+     */
+    private static final int RESET_INTERVAL = 1024;
+
+    private final Path path;
+    private ObjectOutputStream out;
+    private ObjectInputStream in;
+    private long count;
+
+    private SpillFile(Path path) throws IOException {
+        this.path = path;
+        try {
+            this.out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * 创建临时文件
+     * @param prefix 文件名前缀
+     * @return 临时文件
+     */
+    static SpillFile create(String prefix) throws IOException {
+        return new SpillFile(Files.createTempFile(prefix, ".spill"));
+    }
+
+    /**
+     * 创建分批追加写入的临时文件，只写入文件头，两次追加之间不占用文件句柄
+     * @param prefix 文件名前缀
+     * @return 临时文件
+     */
+    static SpillFile createAppendable(String prefix) throws IOException {
+        SpillFile file = create(prefix);
+        try {
+            file.finish();
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * 打开文件追加写入一批元素，写入完成后关闭文件，要求文件由createAppendable创建
+     * @param elements 元素
+     */
+    synchronized void append(List<?> elements) throws IOException {
+        OutputStream os = new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.APPEND));
+        try (ObjectOutputStream o = new ObjectOutputStream(os) {
+            @Override
+            protected void writeStreamHeader() throws IOException {
+                // 文件开头已经有流的头部，续写时用reset代替，读取时可以作为一个连续的流
+                reset();
+            }
+        }) {
+            for (Object e : elements) {
+                o.writeObject(e);
+            }
+        }
+        count += elements.size();
+    }
+
+    /**
+     * 写入的元素个数
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * 写入一个元素，要求元素可以序列化
+     * @param e 元素
+     */
+    void write(Object e) throws IOException {
+        out.writeObject(e);
+        if (++count % RESET_INTERVAL == 0) {
+            out.reset();
+        }
+    }
+
+    /**
+     * 结束写入
+     */
+    void finish() throws IOException {
+        out.close();
+        out = null;
+    }
+
+    /**
+     * 从头读取所有元素，只能调用一次，读取完所有元素后删除文件
+     * @param <T> 元素类型
+     * @return 迭代器
+     */
+    synchronized <T> Iterator<T> read() throws IOException {
+        in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        return new Iterator<>() {
+            long remaining = count;
+
+            @Override
+            public boolean hasNext() {
+                if (remaining == 0) {
+                    delete();
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("当前流已结束");
+                }
+                try {
+                    remaining--;
+                    return (T) in.readObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * 关闭并删除文件，可以重复调用
+     */
+    synchronized void delete() {
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // 删除临时文件失败时忽略
+        }
+    }
+}
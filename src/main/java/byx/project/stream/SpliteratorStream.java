@@ -0,0 +1,105 @@
+package byx.project.stream;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 由可以拆分的Spliterator生成的流
+ * 聚合操作和遍历直接使用新的Spliterator，不会创建流节点，也不会缓存已遍历的元素，
+ * 融合执行和并行执行时也直接使用Spliterator，并行执行时按Spliterator的拆分方式分配元素
+ * 通过first和remain访问时退化为逐个读取元素的普通流
+ * @param <T> 元素类型
+ */
+final class SpliteratorStream<T> implements Stream<T> {
+    private final Supplier<Spliterator<T>> factory;
+    private final Lazy<Stream<T>> pulled;
+    // 只用于获取特征值和元素个数，不会被遍历，避免每次查询都创建新的Spliterator
+    private final Lazy<Spliterator<T>> probe;
+
+    /**
+     * @param factory Spliterator的工厂，每次调用都返回一个从头开始的新Spliterator
+     */
+    SpliteratorStream(Supplier<Spliterator<T>> factory) {
+        this.factory = factory;
+        this.pulled = new Lazy<>(() -> Cons.fromIterator(Spliterators.iterator(factory.get())));
+        this.probe = new Lazy<>(factory);
+    }
+
+    @Override
+    public T first() {
+        return pulled.get().first();
+    }
+
+    @Override
+    public Stream<T> remain() {
+        return pulled.get().remain();
+    }
+
+    @Override
+    public boolean end() {
+        return pulled.get().end();
+    }
+
+    @Override
+    public boolean memoized() {
+        return true;
+    }
+
+    @Override
+    public int characteristics() {
+        return probe.get().characteristics();
+    }
+
+    @Override
+    public long estimateSize() {
+        return probe.get().estimateSize();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return factory.get();
+    }
+
+    @Override
+    public Cursor<T> cursor() {
+        return new Cursor<>(iterator(), this::close);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return Spliterators.iterator(factory.get());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> U collect(U initial, BiFunction<U, T, U> accumulator) {
+        Object[] result = {initial};
+        factory.get().forEachRemaining(e -> result[0] = accumulator.apply((U) result[0], e));
+        return (U) result[0];
+    }
+
+    /**
+     * 获取流中元素个数
+     * @return 元素个数
+     * @throws ArithmeticException 元素个数超过int的范围
+     */
+    @Override
+    public int count() {
+        long size = probe.get().getExactSizeIfKnown();
+        if (size >= 0) {
+            return Math.toIntExact(size);
+        }
+        long[] cnt = {0};
+        factory.get().forEachRemaining(e -> cnt[0]++);
+        return Math.toIntExact(cnt[0]);
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> consumer) {
+        factory.get().forEachRemaining(consumer);
+    }
+}
@@ -1,9 +1,23 @@
 package byx.project.stream;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.*;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
-public interface Stream<T> {
+/**
+ * 流
+ * 流只能由本包中的节点类型实现：一般的节点、空流、数组段节点、由Spliterator生成的流和融合执行的流，
+ * 遍历流时可以针对这几种节点使用专门的处理方式
+ * @param <T> 元素类型
+ */
+public sealed interface Stream<T> extends Iterable<T>, AutoCloseable permits LazyNode, Nil, ChunkStream, SpliteratorStream, FusedStream, DeferredStream {
     /**
      * 流中第一个元素
      */
@@ -16,29 +30,29 @@ public interface Stream<T> {
 
     /**
      * 创建流
+     * first和remain最多只会被计算一次
      * @param firstSupplier 第一个元素的工厂
      * @param remainSupplier 剩余元素组成的流的工厂
      * @param <T> 元素类型
      * @return 流
      */
     static <T> Stream<T> create(Supplier<T> firstSupplier, Supplier<Stream<T>> remainSupplier) {
-        return new Stream<>() {
-            @Override
-            public T first() {
-                return firstSupplier.get();
-            }
+        return create(firstSupplier, remainSupplier, true);
+    }
 
-            @Override
-            public Stream<T> remain() {
-                return remainSupplier.get();
-            }
-        };
+    /**
+     * 创建流
+     * @param firstSupplier 第一个元素的工厂
+     * @param remainSupplier 剩余元素组成的流的工厂
+     * @param memoized 是否缓存first和remain的计算结果
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> Stream<T> create(Supplier<T> firstSupplier, Supplier<Stream<T>> remainSupplier, boolean memoized) {
+        return new Cons<>(firstSupplier, remainSupplier, memoized);
     }
 
-    Stream<?> EMPTY = create(
-            () -> {throw new IllegalStateException("当前流已结束");},
-            () -> {throw new IllegalStateException("当前流已结束");}
-    );
+    Stream<?> EMPTY = new Nil<>();
 
     /**
      * 获取空流
@@ -55,6 +69,87 @@ public interface Stream<T> {
         return this == EMPTY;
     }
 
+    /**
+     * 判断当前流是否缓存已计算的元素
+     */
+    default boolean memoized() {
+        return false;
+    }
+
+    /**
+     * 获取不缓存已计算元素的流
+     * 每次访问first和remain都会重新计算，持有流的头部不会导致已遍历的元素无法回收，
+     * 在此基础上调用的操作也不会缓存计算结果，适用于对内存敏感的场景
+     * fromIterator和fromSupplier生成的元素无法重新计算，仍然会共享已经生成的元素
+     * @return 流
+     */
+    default Stream<T> unmemoized() {
+        return this;
+    }
+
+    /**
+     * 获取融合执行的流
+     * 之后的map、filter、limit、skip操作不会立即创建中间流，而是在调用聚合操作时
+     * 编译成一条处理链，在一次循环中完成所有操作，无限流在遇到limit后会及时停止
+     * @return 流
+     */
+    default Stream<T> fused() {
+        return FusedStream.of(this, false);
+    }
+
+    /**
+     * 获取并行执行的流
+     * 在融合执行的基础上，如果流由数组、集合或文件生成，并且之后只调用了map和filter，
+     * 则聚合操作会把元素按范围拆分，在ForkJoinPool中并行执行，否则仍然顺序执行
+     * 并行执行时，map、filter和聚合操作中的函数可能在多个线程中同时调用，forEach不保证遍历顺序
+     * @return 流
+     */
+    default Stream<T> parallel() {
+        return FusedStream.of(this, true);
+    }
+
+    /**
+     * 在后台线程中预先计算流中的元素
+     * 守护线程把计算好的元素放入大小为bufferSize的缓冲区，缓冲区满时等待，
+     * 适用于从磁盘、队列等阻塞的数据源读取元素，使读取和之后的处理同时进行
+     * 调用时后台线程立即开始计算，但不会等待，第一次访问返回的流时才等待第一个元素
+     * 计算过程中抛出的异常会在访问到对应位置时重新抛出
+     * 提前结束遍历时调用返回的流或其游标的close立即停止后台线程，之后不能再访问尚未读取的元素，
+     * 没有调用close时，后台线程在返回的流不再被引用并被垃圾回收后才会停止
+     * @param bufferSize 缓冲区大小
+     * @return 流
+     */
+    default Stream<T> prefetch(int bufferSize) {
+        return Prefetcher.prefetch(this, bufferSize);
+    }
+
+    /**
+     * 获取流的特征值，取值与Spliterator中的常量相同
+     * 由数组或集合生成的流包含SIZED，经过map、limit、skip、concat之后仍然保留
+     * @return 特征值
+     */
+    default int characteristics() {
+        return end()
+                ? Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE
+                : Spliterator.ORDERED;
+    }
+
+    /**
+     * 估计流中元素个数，包含SIZED特征值时为确切值
+     * @return 元素个数，无法估计时返回Long.MAX_VALUE
+     */
+    default long estimateSize() {
+        return end() ? 0 : Long.MAX_VALUE;
+    }
+
+    /**
+     * 获取流中元素的确切个数
+     * @return 元素个数，未知时返回-1
+     */
+    default long exactSize() {
+        return (characteristics() & Spliterator.SIZED) != 0 ? estimateSize() : -1;
+    }
+
     /**
      * 从数组生成流
      * @param arr 数组
@@ -74,23 +169,35 @@ public interface Stream<T> {
      * @return 流
      */
     static <T> Stream<T> fromArray(int startIndex, T[] arr) {
-        return startIndex == arr.length
+        return startIndex >= arr.length
                 ? empty()
-                : create(() -> arr[startIndex], () -> fromArray(startIndex + 1, arr));
+                : ChunkStream.create(arr, startIndex, arr.length);
     }
 
     /**
      * 从迭代器生成流
+     * 迭代器只能读取一次，不缓存计算结果的流也共享已经读取的元素，重复遍历时得到相同的元素
      * @param iterator 迭代器
      * @param <T> 元素类型
      * @return 流
      */
     static <T> Stream<T> fromIterator(Iterator<T> iterator) {
+        // 调用时只检查是否还有元素，访问到哪一段才从迭代器中读取哪一段
         return iterator.hasNext()
-                ? create(iterator::next, () -> fromIterator(iterator))
+                ? ChunkStream.fromIterator(iterator)
                 : empty();
     }
 
+    /**
+     * 从java.util.stream.Stream生成流
+     * @param stream java.util.stream.Stream
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> Stream<T> fromJavaStream(java.util.stream.Stream<T> stream) {
+        return fromIterator(stream.iterator());
+    }
+
     /**
      * 从集合生成流
      * @param collection 集合
@@ -98,17 +205,88 @@ public interface Stream<T> {
      * @return 流
      */
     static <T> Stream<T> fromCollection(Collection<T> collection) {
-        return fromIterator(collection.iterator());
+        Object[] arr = collection.toArray();
+        if (arr.length == 0) {
+            return empty();
+        }
+        // 保留集合的DISTINCT和按自然顺序的SORTED特征值
+        Spliterator<T> spliterator = collection.spliterator();
+        int characteristics = spliterator.characteristics() & Spliterator.DISTINCT;
+        if (spliterator.hasCharacteristics(Spliterator.SORTED) && spliterator.getComparator() == null) {
+            characteristics |= Spliterator.SORTED;
+        }
+        return ChunkStream.create(arr, 0, arr.length, characteristics);
+    }
+
+    /**
+     * 按行读取UTF-8编码的文件
+     * 文件通过内存映射按区域读取，不会整个读入堆内存，行以\n或\r\n结尾，返回的行不包含换行符
+     * 聚合操作和融合执行时直接读取映射区域，不会缓存已读取的行，并行执行时把文件按行拆分成多个范围
+     * 读取文件失败时抛出UncheckedIOException
+     * @param path 文件路径
+     * @return 流
+     */
+    static Stream<String> lines(Path path) {
+        return lines(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按行读取文件
+     * 只支持换行符占一个字节的字符集：UTF-8、ISO-8859-1和US-ASCII，其余行为与lines(Path)相同
+     * @param path 文件路径
+     * @param charset 字符集
+     * @return 流
+     */
+    static Stream<String> lines(Path path, Charset charset) {
+        if (!charset.equals(StandardCharsets.UTF_8)
+                && !charset.equals(StandardCharsets.ISO_8859_1)
+                && !charset.equals(StandardCharsets.US_ASCII)) {
+            throw new IllegalArgumentException("不支持的字符集：" + charset);
+        }
+        MappedFile file = new MappedFile(path, MappedFile.SEGMENT_SIZE);
+        return new SpliteratorStream<>(() -> file.lines(bytes -> charset.decode(bytes).toString()));
+    }
+
+    /**
+     * 按行读取文件，返回直接引用映射区域的字符序列，不会复制和解码行的内容
+     * 每个字节按ISO-8859-1解释成一个字符，适用于ASCII文本，其余行为与lines(Path)相同
+     * @param path 文件路径
+     * @return 流
+     */
+    static Stream<CharSequence> lineViews(Path path) {
+        MappedFile file = new MappedFile(path, MappedFile.SEGMENT_SIZE);
+        return new SpliteratorStream<>(() -> file.lines(ByteCharSequence::new));
+    }
+
+    /**
+     * 按固定长度的记录读取二进制文件，每条记录是直接引用映射区域的只读ByteBuffer
+     * 末尾不足一条记录的字节会被忽略，流中元素个数已知，其余行为与lines(Path)相同
+     * @param path 文件路径
+     * @param recordSize 每条记录的字节数
+     * @return 流
+     */
+    static Stream<ByteBuffer> records(Path path, int recordSize) {
+        if (recordSize <= 0) {
+            throw new IllegalArgumentException("recordSize必须大于0");
+        }
+        MappedFile file = new MappedFile(path, MappedFile.SEGMENT_SIZE);
+        return new SpliteratorStream<>(() -> file.records(recordSize));
     }
 
     /**
      * 从工厂方法生成流
+     * 工厂方法每次调用的结果可能不同，不缓存计算结果的流也共享已经生成的元素，重复遍历时得到相同的元素
      * @param supplier 生成流中元素的工厂方法
      * @param <T> 元素类型
      * @return 流
      */
     static <T> Stream<T> fromSupplier(Supplier<T> supplier) {
-        return create(supplier, () -> fromSupplier(supplier));
+        Lazy<T> first = new Lazy<>(supplier);
+        Lazy<Stream<T>> remain = new Lazy<>(() -> {
+            first.get();
+            return fromSupplier(supplier);
+        });
+        return create(first, new Continuation<>(remain, remain));
     }
 
     /**
@@ -119,7 +297,7 @@ public interface Stream<T> {
      * @return 流
      */
     static <T> Stream<T> fromGenerator(T initial, UnaryOperator<T> generator) {
-        return create(() -> initial, () -> fromGenerator(generator.apply(initial), generator));
+        return new GeneratorNode<>(initial, generator);
     }
 
     /**
@@ -131,9 +309,26 @@ public interface Stream<T> {
      * @return 流
      */
     static <T> Stream<T> concat(Stream<T> s1, Stream<T> s2) {
+        if (s1 instanceof ChunkStream<T> c) {
+            return c.append(s2);
+        }
+        return concat(s1, () -> s2);
+    }
+
+    /**
+     * 首尾连接两个流，第二个流在遍历完第一个流之后才会创建
+     * @param s1 s1
+     * @param s2 s2的工厂
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> Stream<T> concat(Stream<T> s1, Supplier<Stream<T>> s2) {
+        if (s1 instanceof ChunkStream<T> c) {
+            return c.append(s2);
+        }
         return s1.end()
-                ? s2
-                : create(s1::first, () -> concat(s1.remain(), s2));
+                ? s2.get()
+                : new ConcatNode<>(s1, s2, s1.memoized());
     }
 
     /**
@@ -147,7 +342,7 @@ public interface Stream<T> {
     static <T> Stream<T> interleave(Stream<T> s1, Stream<T> s2) {
         return s1.end()
                 ? s2
-                : create(s1::first, () -> interleave(s2, s1.remain()));
+                : create(s1::first, () -> interleave(s2, s1.remain()), s1.memoized());
     }
 
     /**
@@ -161,20 +356,100 @@ public interface Stream<T> {
         U result = initial;
         Stream<T> s = this;
         while (!s.end()) {
-            result = accumulator.apply(result, s.first());
-            s = s.remain();
+            if (s instanceof ChunkStream<T> c) {
+                result = c.collectChunk(result, accumulator);
+                s = c.rest();
+            } else if (s instanceof LazyNode<T> n) {
+                result = accumulator.apply(result, n.first());
+                s = n.remain();
+            } else {
+                result = accumulator.apply(result, s.first());
+                s = s.remain();
+            }
         }
         return result;
     }
 
+    /**
+     * 可以并行执行的流的聚合操作
+     * 并行执行时每部分元素分别从supplier获取初始值进行聚合，然后用combiner按顺序合并各部分的结果
+     * @param supplier 初始值的工厂
+     * @param accumulator 聚合操作
+     * @param combiner 合并操作
+     * @param <U> 聚合后的类型
+     * @return 聚合结果
+     */
+    default <U> U collect(Supplier<U> supplier, BiFunction<U, T, U> accumulator, BinaryOperator<U> combiner) {
+        return collect(supplier.get(), accumulator);
+    }
+
+    /**
+     * 使用Collector进行聚合，可以并行执行
+     * @param collector collector
+     * @param <A> 中间结果的类型
+     * @param <R> 聚合结果的类型
+     * @return 聚合结果
+     */
+    default <A, R> R collect(Collector<? super T, A, R> collector) {
+        BiConsumer<A, ? super T> accumulator = collector.accumulator();
+        A container = collect(collector.supplier(), (a, e) -> {
+            accumulator.accept(a, e);
+            return a;
+        }, collector.combiner());
+        return collector.finisher().apply(container);
+    }
+
+    /**
+     * 在一次遍历中同时进行多个聚合操作，上游的map等操作对每个元素只执行一次
+     * 通过返回结果的get方法传入对应的Collector获取各个聚合操作的结果
+     * @param collectors 聚合操作，例如List.of(counting, summing)
+     * @return 聚合结果
+     */
+    default Summary summarize(List<? extends Collector<? super T, ?, ?>> collectors) {
+        return collect(Summary.combine(collectors));
+    }
+
+    /**
+     * 在一次遍历中统计映射后的int值的个数、总和、最小值、最大值和平均值
+     * @param mapper 映射器
+     * @return 统计结果
+     */
+    default IntSummaryStatistics summarizeInt(ToIntFunction<? super T> mapper) {
+        return collect(Collectors.summarizingInt(mapper));
+    }
+
+    /**
+     * 在一次遍历中统计映射后的long值的个数、总和、最小值、最大值和平均值
+     * @param mapper 映射器
+     * @return 统计结果
+     */
+    default LongSummaryStatistics summarizeLong(ToLongFunction<? super T> mapper) {
+        return collect(Collectors.summarizingLong(mapper));
+    }
+
+    /**
+     * 在一次遍历中统计映射后的double值的个数、总和、最小值、最大值和平均值
+     * @param mapper 映射器
+     * @return 统计结果
+     */
+    default DoubleSummaryStatistics summarizeDouble(ToDoubleFunction<? super T> mapper) {
+        return collect(Collectors.summarizingDouble(mapper));
+    }
+
     /**
      * 将流转换成列表
      * @return 列表
      */
     default List<T> toList() {
-        return collect(new ArrayList<>(), (list, e) -> {
+        // 元素个数已知时预先分配列表的容量
+        long size = exactSize();
+        Supplier<List<T>> supplier = size < 0 || size > Integer.MAX_VALUE ? ArrayList::new : () -> new ArrayList<>((int) size);
+        return collect(supplier, (list, e) -> {
             list.add(e);
             return list;
+        }, (list1, list2) -> {
+            list1.addAll(list2);
+            return list1;
         });
     }
 
@@ -183,9 +458,12 @@ public interface Stream<T> {
      * @return 集合
      */
     default Set<T> toSet() {
-        return collect(new HashSet<>(), (set, e) -> {
+        return collect(HashSet::new, (set, e) -> {
             set.add(e);
             return set;
+        }, (set1, set2) -> {
+            set1.addAll(set2);
+            return set1;
         });
     }
 
@@ -198,30 +476,265 @@ public interface Stream<T> {
      * @return map
      */
     default <K, V> Map<K, V> toMap(Function<T, K> keyGenerator, Function<T, V> valueGenerator) {
-        return collect(new HashMap<>(), (map, e) -> {
+        return collect(HashMap::new, (map, e) -> {
             map.put(keyGenerator.apply(e), valueGenerator.apply(e));
             return map;
+        }, (map1, map2) -> {
+            map1.putAll(map2);
+            return map1;
         });
     }
 
+    /**
+     * 按键对流中的元素分组，并对每个分组进行聚合，可以并行执行
+     * 顺序执行并且元素个数已知时按元素个数预先分配哈希表的空间，预先分配的空间有上限
+     * @param keyFn 键的生成函数，不能返回null
+     * @param downstream 每个分组的聚合操作
+     * @param <K> 键的类型
+     * @param <A> 聚合的中间结果类型
+     * @param <D> 聚合结果类型
+     * @return 键到聚合结果的map
+     */
+    default <K, A, D> Map<K, D> groupBy(Function<? super T, ? extends K> keyFn, Collector<? super T, A, D> downstream) {
+        int expected = Grouping.expectedGroups(this);
+        return collect(Collectors.groupingBy(keyFn, () -> Grouping.newHashMap(expected), downstream));
+    }
+
+    /**
+     * 统计每个键对应的元素个数
+     * @param keyFn 键的生成函数，不能返回null
+     * @param <K> 键的类型
+     * @return 键到元素个数的map
+     */
+    default <K> Map<K, Long> countBy(Function<? super T, ? extends K> keyFn) {
+        return groupBy(keyFn, Collectors.counting());
+    }
+
+    /**
+     * 按是否满足条件把流中的元素分成两组
+     * @param predicate 断言
+     * @return 分别以true和false为键的两组元素，没有元素的一组为空列表
+     */
+    default Map<Boolean, List<T>> partitionBy(Predicate<? super T> predicate) {
+        return collect(Collectors.partitioningBy(predicate));
+    }
+
+    /**
+     * 按int类型的键对流中的元素分组，并对每个分组进行聚合，键不会被装箱
+     * @param keyFn 键的生成函数
+     * @param downstream 每个分组的聚合操作
+     * @param <A> 聚合的中间结果类型
+     * @param <D> 聚合结果类型
+     * @return 键到聚合结果的哈希表
+     */
+    default <A, D> IntHashMap<D> groupByInt(ToIntFunction<? super T> keyFn, Collector<? super T, A, D> downstream) {
+        return Grouping.groupByInt(this, keyFn, downstream);
+    }
+
+    /**
+     * 按long类型的键对流中的元素分组，并对每个分组进行聚合，键不会被装箱
+     * @param keyFn 键的生成函数
+     * @param downstream 每个分组的聚合操作
+     * @param <A> 聚合的中间结果类型
+     * @param <D> 聚合结果类型
+     * @return 键到聚合结果的哈希表
+     */
+    default <A, D> LongHashMap<D> groupByLong(ToLongFunction<? super T> keyFn, Collector<? super T, A, D> downstream) {
+        return Grouping.groupByLong(this, keyFn, downstream);
+    }
+
     /**
      * 获取流中元素个数
+     * 元素个数已知时直接返回，不会计算流中的元素
      * @return 元素个数
+     * @throws ArithmeticException 元素个数超过int的范围
      */
     default int count() {
-        return collect(0, (cnt, e) -> cnt + 1);
+        int cnt = 0;
+        Stream<T> s = this;
+        while (!s.end()) {
+            if (s instanceof ChunkStream<T> c) {
+                long size = c.exactSize();
+                if (size >= 0) {
+                    return Math.toIntExact(cnt + size);
+                }
+                cnt = Math.addExact(cnt, c.to - c.from);
+                s = c.rest();
+            } else if (s instanceof LazyNode<T> n) {
+                cnt = Math.addExact(cnt, 1);
+                s = n.remain();
+            } else {
+                cnt = Math.addExact(cnt, 1);
+                s = s.remain();
+            }
+        }
+        return cnt;
     }
 
     /**
      * 遍历流中所有元素
      * @param consumer 遍历操作
      */
-    default void forEach(Consumer<T> consumer) {
+    @Override
+    default void forEach(Consumer<? super T> consumer) {
         Stream<T> s = this;
         while (!s.end()) {
-            consumer.accept(s.first());
-            s = s.remain();
+            if (s instanceof ChunkStream<T> c) {
+                c.forEachInChunk(consumer);
+                s = c.rest();
+            } else if (s instanceof LazyNode<T> n) {
+                consumer.accept(n.first());
+                s = n.remain();
+            } else {
+                consumer.accept(s.first());
+                s = s.remain();
+            }
+        }
+    }
+
+    /**
+     * 获取流中第一个元素
+     * @return 第一个元素，流为空时返回空值
+     */
+    default Optional<T> findFirst() {
+        return end() ? Optional.empty() : Optional.of(first());
+    }
+
+    /**
+     * 获取流中任意一个元素
+     * 并行执行时不保证返回第一个元素
+     * @return 任意一个元素，流为空时返回空值
+     */
+    default Optional<T> findAny() {
+        return findFirst();
+    }
+
+    /**
+     * 判断流中是否存在满足条件的元素
+     * 找到满足条件的元素后立即返回，不再计算剩余的流
+     * @param predicate 断言
+     * @return 是否存在满足条件的元素
+     */
+    default boolean anyMatch(Predicate<T> predicate) {
+        for (T e : this) {
+            if (predicate.test(e)) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * 判断流中是否所有元素都满足条件
+     * 找到不满足条件的元素后立即返回，不再计算剩余的流
+     * @param predicate 断言
+     * @return 是否所有元素都满足条件
+     */
+    default boolean allMatch(Predicate<T> predicate) {
+        return !anyMatch(predicate.negate());
+    }
+
+    /**
+     * 判断流中是否没有元素满足条件
+     * 找到满足条件的元素后立即返回，不再计算剩余的流
+     * @param predicate 断言
+     * @return 是否没有元素满足条件
+     */
+    default boolean noneMatch(Predicate<T> predicate) {
+        return !anyMatch(predicate);
+    }
+
+    /**
+     * 使用初始值归约流中的元素
+     * 并行执行时要求accumulator满足结合律，并且identity是它的单位元
+     * @param identity 初始值
+     * @param accumulator 归约操作
+     * @return 归约结果
+     */
+    default T reduce(T identity, BinaryOperator<T> accumulator) {
+        return collect(() -> identity, accumulator, accumulator);
+    }
+
+    /**
+     * 归约流中的元素
+     * 并行执行时要求accumulator满足结合律
+     * @param accumulator 归约操作
+     * @return 归约结果，流为空时返回空值
+     */
+    default Optional<T> reduce(BinaryOperator<T> accumulator) {
+        return end() ? Optional.empty() : Optional.of(remain().reduce(first(), accumulator));
+    }
+
+    /**
+     * 获取流中最小的元素
+     * 有多个最小元素时返回第一个
+     * @param comparator 比较器
+     * @return 最小元素，流为空时返回空值
+     */
+    default Optional<T> min(Comparator<? super T> comparator) {
+        return reduce(BinaryOperator.minBy(comparator));
+    }
+
+    /**
+     * 获取流中最大的元素
+     * 有多个最大元素时返回第一个
+     * @param comparator 比较器
+     * @return 最大元素，流为空时返回空值
+     */
+    default Optional<T> max(Comparator<? super T> comparator) {
+        return reduce(BinaryOperator.maxBy(comparator));
+    }
+
+    /**
+     * 获取遍历流中元素的迭代器
+     * 迭代器只持有当前位置，遍历由数组或集合生成的流时不会为每个元素创建流节点
+     * @return 迭代器
+     */
+    @Override
+    default Iterator<T> iterator() {
+        return new StreamIterator<>(this);
+    }
+
+    /**
+     * 获取只能遍历一次的游标
+     * 遍历时不会缓存计算结果，已遍历的元素不会被保留，适用于遍历很长或无限的流
+     * 持有流的头部或者在缓存计算结果的流上调用也不会导致内存占用随遍历的元素个数增长，
+     * 但是在此之前已经计算并缓存的部分仍然会被保留
+     * 由迭代器生成的流中尚未读取的元素会被游标消耗，之后不能再通过原来的流访问
+     * @return 游标
+     */
+    default Cursor<T> cursor() {
+        return new Cursor<>(new StreamIterator<>(unmemoized()), this::close);
+    }
+
+    /**
+     * 关闭流，停止为流计算元素的后台任务，例如prefetch的后台线程
+     * 只有使用后台任务的操作返回的流需要关闭，关闭之后不能再访问尚未计算的元素，其他流的close不做任何操作
+     * 在此基础上调用map、filter、limit、skip返回的流关闭时同时关闭当前流，其他操作返回的流不会关闭当前流
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * 获取流的Spliterator
+     * 由数组或集合生成的流返回可以按范围拆分的Spliterator
+     * @return Spliterator
+     */
+    @Override
+    default Spliterator<T> spliterator() {
+        long size = exactSize();
+        return size < 0
+                ? Spliterators.spliteratorUnknownSize(iterator(), characteristics())
+                : Spliterators.spliterator(iterator(), size, characteristics());
+    }
+
+    /**
+     * 转换成java.util.stream.Stream
+     * @return java.util.stream.Stream
+     */
+    default java.util.stream.Stream<T> asJavaStream() {
+        return StreamSupport.stream(spliterator(), false);
     }
 
     /**
@@ -232,18 +745,33 @@ public interface Stream<T> {
     default Stream<T> limit(int n) {
         return n <= 0 || end()
                 ? empty()
-                : create(this::first, () -> remain().limit(n - 1));
+                : new LimitNode<>(this, n, memoized());
     }
 
     /**
      * 跳过流中的元素
+     * 流由数组或集合生成时可以直接跳过，不会逐个遍历被跳过的元素
      * @param n 跳过的个数
      * @return 流
      */
     default Stream<T> skip(int n) {
-        return end() || n <= 0
-                ? this
-                : remain().skip(n - 1);
+        Stream<T> s = this;
+        int i = 0;
+        while (i < n && !s.end()) {
+            if (s instanceof ChunkStream<T> c) {
+                Stream<T> skipped = c.jump(n - i);
+                if (skipped != null) {
+                    return skipped;
+                }
+                int k = Math.min(n - i, c.to - c.from);
+                s = c.drop(k);
+                i += k;
+            } else {
+                s = s.remain();
+                i++;
+            }
+        }
+        return s;
     }
 
     /**
@@ -255,7 +783,94 @@ public interface Stream<T> {
     default <U> Stream<U> map(Function<T, U> mapper) {
         return end()
                 ? empty()
-                : create(() -> mapper.apply(first()), () -> remain().map(mapper));
+                : new MapNode<>(this, mapper, memoized());
+    }
+
+    /**
+     * 异步映射流中的元素，按源流的顺序返回结果
+     * 同时进行的映射不超过parallelism个，取出一个结果后才会从源流中读取下一个元素启动映射
+     * 第一次访问返回的流时才读取源流并启动映射，调用时不会等待
+     * 映射失败时抛出映射器的异常，并取消尚未开始的映射
+     * 提前结束遍历时调用返回的流或其游标的close取消尚未开始的映射，之后不能再访问尚未取出的结果，
+     * 没有调用close时，尚未开始的映射在返回的流不再被引用并被垃圾回收后才会取消
+     * @param parallelism 最多同时进行的映射个数
+     * @param mapper 异步映射器
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    default <U> Stream<U> mapAsync(int parallelism, Function<T, CompletableFuture<U>> mapper) {
+        return AsyncMapper.map(this, mapper, parallelism, true);
+    }
+
+    /**
+     * 异步映射流中的元素，按完成的顺序返回结果
+     * 其余行为与mapAsync相同
+     * @param parallelism 最多同时进行的映射个数
+     * @param mapper 异步映射器
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    default <U> Stream<U> mapAsyncUnordered(int parallelism, Function<T, CompletableFuture<U>> mapper) {
+        return AsyncMapper.map(this, mapper, parallelism, false);
+    }
+
+    /**
+     * 在后台线程中映射流中的元素，按源流的顺序返回结果，适用于需要等待I/O的映射器
+     * 每个映射在守护线程组成的线程池中执行
+     * 其余行为与mapAsync相同
+     * @param parallelism 最多同时进行的映射个数
+     * @param mapper 映射器
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    default <U> Stream<U> mapParallel(int parallelism, Function<T, U> mapper) {
+        return AsyncMapper.mapParallel(this, mapper, parallelism, true);
+    }
+
+    /**
+     * 在后台线程中映射流中的元素，按完成的顺序返回结果
+     * 其余行为与mapParallel相同
+     * @param parallelism 最多同时进行的映射个数
+     * @param mapper 映射器
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    default <U> Stream<U> mapParallelUnordered(int parallelism, Function<T, U> mapper) {
+        return AsyncMapper.mapParallel(this, mapper, parallelism, false);
+    }
+
+    /**
+     * 将流中的元素映射成int
+     * 映射得到的元素按段保存在int数组中，第一个元素在第一次被访问时才计算，之后访问到哪一段才计算哪一段
+     * @param mapper 映射器
+     * @return 流
+     */
+    default IntStream mapToInt(ToIntFunction<T> mapper) {
+        return end()
+                ? IntStream.empty()
+                : IntChunk.fromIterator(iterator(), mapper);
+    }
+
+    /**
+     * 将流中的元素映射成long，其余行为与mapToInt相同
+     * @param mapper 映射器
+     * @return 流
+     */
+    default LongStream mapToLong(ToLongFunction<T> mapper) {
+        return end()
+                ? LongStream.empty()
+                : LongChunk.fromIterator(iterator(), mapper);
+    }
+
+    /**
+     * 将流中的元素映射成double，其余行为与mapToInt相同
+     * @param mapper 映射器
+     * @return 流
+     */
+    default DoubleStream mapToDouble(ToDoubleFunction<T> mapper) {
+        return end()
+                ? DoubleStream.empty()
+                : DoubleChunk.fromIterator(iterator(), mapper);
     }
 
     /**
@@ -264,15 +879,24 @@ public interface Stream<T> {
      * @return 流
      */
     default Stream<T> filter(Predicate<T> predicate) {
-        if (end()) {
-            return empty();
-        }
-        T e = first();
-        if (predicate.test(e)) {
-            return Stream.create(() -> e, () -> remain().filter(predicate));
-        } else {
-            return remain().filter(predicate);
+        // 循环跳过不满足条件的元素，避免递归过深导致栈溢出
+        Stream<T> s = this;
+        while (!s.end()) {
+            if (s instanceof ChunkStream<T> c && c.memoized()) {
+                Stream<T> filtered = c.filterChunk(predicate);
+                if (filtered != null) {
+                    return filtered;
+                }
+                s = c.drop(Math.min(c.to - c.from, ChunkStream.CHUNK_SIZE));
+                continue;
+            }
+            T e = s.first();
+            if (predicate.test(e)) {
+                return new FilterNode<>(e, s, predicate, memoized());
+            }
+            s = s.remain();
         }
+        return empty();
     }
 
     /**
@@ -293,6 +917,43 @@ public interface Stream<T> {
         return interleave(this, s);
     }
 
+    /**
+     * 按位置合并两个流中的元素，较短的流结束时结束
+     * s1[0] + s2[0] -> s1[1] + s2[1] -> ...
+     * @param other 另一个流
+     * @param zipper 合并函数
+     * @param <U> 另一个流的元素类型
+     * @param <R> 合并后的元素类型
+     * @return 流
+     */
+    default <U, R> Stream<R> zipWith(Stream<U> other, BiFunction<T, U, R> zipper) {
+        return end() || other.end()
+                ? empty()
+                : new ZipNode<>(this, other, zipper, memoized());
+    }
+
+    /**
+     * 按位置把两个流中的元素组成键值对，较短的流结束时结束
+     * @param other 另一个流
+     * @param <U> 另一个流的元素类型
+     * @return 流
+     */
+    default <U> Stream<Map.Entry<T, U>> zip(Stream<U> other) {
+        return zipWith(other, AbstractMap.SimpleImmutableEntry::new);
+    }
+
+    /**
+     * 把流中的元素和它的下标一起映射，下标从0开始，不会被装箱
+     * @param mapper 映射器，参数依次为下标和元素
+     * @param <U> 映射后的元素类型
+     * @return 流
+     */
+    default <U> Stream<U> zipWithIndex(IndexedFunction<T, U> mapper) {
+        return end()
+                ? empty()
+                : new IndexNode<>(this, 0, mapper, memoized());
+    }
+
     /**
      * 扁平化流
      * @param mapper 元素到流的映射器
@@ -300,6 +961,212 @@ public interface Stream<T> {
      * @return 流
      */
     default <U> Stream<U> flatMap(Function<T, Stream<U>> mapper) {
-        return collect(empty(), (s, e) -> s.concat(mapper.apply(e)));
+        // 循环跳过映射成空流的元素，当前的流遍历完之后才映射下一个元素
+        Stream<T> s = this;
+        while (!s.end()) {
+            Stream<U> inner = mapper.apply(s.first());
+            if (!inner.end()) {
+                Stream<T> outer = s;
+                Stream<U> result = concat(inner, new Continuation<>(
+                        () -> outer.remain().flatMap(mapper), () -> outer.unmemoized().remain().flatMap(mapper)));
+                // 映射得到的流默认缓存计算结果，当前的流不缓存时连接后的流也不缓存
+                return memoized() ? result : result.unmemoized();
+            }
+            s = s.remain();
+        }
+        return empty();
+    }
+
+    /**
+     * 把流中的元素同时分发给多个处理函数，源流只遍历一次
+     * 每个处理函数在单独的线程中运行，接收一个只能遍历一次的流，并返回对流进行聚合的结果，
+     * 该流不缓存已遍历的元素，处理函数持有流的头部时占用的内存也不随源流的长度增长，
+     * 各个处理函数的进度不同时，已读取但尚未被所有处理函数遍历的元素保存在大小为bufferSize的缓冲区中，
+     * 最快的处理函数领先最慢的处理函数达到bufferSize个元素时等待
+     * 处理函数提前返回后不再阻塞其他处理函数，源流或处理函数抛出的异常会在等待所有处理函数结束后重新抛出，
+     * 有多个处理函数失败时抛出第一个失败的处理函数的异常，其余的异常作为被抑制的异常
+     * @param bufferSize 缓冲区大小
+     * @param pipelines 处理函数
+     * @param <R> 结果类型
+     * @return 按顺序排列的每个处理函数的结果
+     */
+    default <R> List<R> broadcast(int bufferSize, List<? extends Function<? super Stream<T>, ? extends R>> pipelines) {
+        return Broadcaster.broadcast(this, bufferSize, pipelines);
+    }
+
+    /**
+     * 缓存流中的元素，使多个消费者共享同一份计算结果
+     * 元素在第一次被访问时按段读入共享的缓存，之后从返回的流的任意位置开始遍历，
+     * 包括通过游标遍历，都直接使用缓存中的元素，不会重新计算源流
+     * @return 流
+     */
+    default Stream<T> cache() {
+        return StreamCache.cache(this);
+    }
+
+    /**
+     * 缓存流中的元素，最多缓存maxElements个元素
+     * 缓存的元素超过上限时按淘汰策略淘汰整段元素，被淘汰的段再次被访问时从该段在源流中的起始位置重新计算，
+     * 源流由fromIterator或fromSupplier生成时无法重新计算，被淘汰的段从源流共享的元素中读取，
+     * 这些元素会一直保留在内存中，缓存的上限不能限制内存占用
+     * @param maxElements 最多缓存的元素个数，至少会保留最近访问的一段
+     * @param policy 淘汰策略
+     * @return 流
+     */
+    default Stream<T> cache(int maxElements, EvictionPolicy policy) {
+        return StreamCache.cache(this, maxElements, e -> 1, policy);
+    }
+
+    /**
+     * 缓存流中的元素，缓存中元素的总权重不超过maxWeight，例如用元素占用的字节数作为权重
+     * 其余行为与cache(maxElements, policy)相同
+     * @param maxWeight 最大总权重，至少会保留最近访问的一段
+     * @param weigher 元素的权重
+     * @param policy 淘汰策略
+     * @return 流
+     */
+    default Stream<T> cache(long maxWeight, ToLongFunction<? super T> weigher, EvictionPolicy policy) {
+        return StreamCache.cache(this, maxWeight, weigher, policy);
+    }
+
+    /**
+     * 把流中的元素划分成窗口，每个窗口包含size个连续的元素，相邻窗口的起始位置相差step
+     * step小于size时为滑动窗口，等于size时为滚动窗口，大于size时跳过窗口之间的元素，末尾不完整的窗口会被丢弃
+     * 窗口是共享缓冲区上的只读视图，不会为每个窗口复制元素，每个元素平均只复制常数次
+     * @param size 窗口大小
+     * @param step 步长
+     * @return 由窗口组成的流
+     */
+    default Stream<List<T>> window(int size, int step) {
+        return Windows.window(this, size, step);
+    }
+
+    /**
+     * 计算每个大小为size的滑动窗口（步长为1）中元素的聚合值
+     * 使用双栈法维护聚合值，每个元素平均只参与常数次聚合操作，聚合操作需要满足结合律，不需要可逆
+     * 元素个数少于size时返回空流
+     * @param size 窗口大小
+     * @param identity 聚合操作的单位元
+     * @param accumulator 聚合操作
+     * @return 由聚合值组成的流
+     */
+    default Stream<T> slidingAggregate(int size, T identity, BinaryOperator<T> accumulator) {
+        return Windows.slidingAggregate(this, size, identity, accumulator);
+    }
+
+    /**
+     * 对流中的元素排序，排序是稳定的
+     * 第一次访问返回的流时才读取所有元素，遍历时才逐批取出排好序的元素，只访问前k个元素的代价为O(n + k log n)
+     * @param comparator 比较器，为null时按自然顺序
+     * @return 流
+     */
+    default Stream<T> sorted(Comparator<? super T> comparator) {
+        return new DeferredStream<>(() -> ExternalSorter.sort(this, comparator, Integer.MAX_VALUE));
+    }
+
+    /**
+     * 对流中的元素排序，排序是稳定的，内存中的元素超过memoryLimit时使用外部排序
+     * 第一次访问返回的流时才读取所有元素，每读取memoryLimit个元素就把排好序的一段通过Java序列化写入临时文件，
+     * 遍历返回的流时再按需对所有段进行多路归并，此时每段只在内存中保留一个元素
+     * 源流通过游标读取，已经写入临时文件的元素不会因为源流的头部被引用而保留在内存中
+     * 写入临时文件时要求元素可以序列化，临时文件在遍历结束或返回的流不再被引用时删除
+     * 元素个数不超过memoryLimit时与sorted(comparator)相同
+     * @param comparator 比较器，为null时按自然顺序
+     * @param memoryLimit 内存中最多保存的元素个数
+     * @return 流
+     */
+    default Stream<T> sorted(Comparator<? super T> comparator, int memoryLimit) {
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException("memoryLimit必须大于0");
+        }
+        return new DeferredStream<>(() -> ExternalSorter.sort(this, comparator, memoryLimit));
+    }
+
+    /**
+     * 哈希连接，对于两侧键相等的每一对元素，用combiner合并成结果流中的一个元素
+     * 第一次访问返回的流时才读取构建侧的所有元素建立哈希表，遍历返回的流时才读取探测侧的元素
+     * 两侧元素个数都已知且当前流较少时以当前流为构建侧，结果按other的顺序排列，否则以other为构建侧，结果按当前流的顺序排列
+     * @param other 另一个流
+     * @param leftKey 当前流中元素的键
+     * @param rightKey other中元素的键
+     * @param combiner 合并函数，参数依次为当前流和other中的元素
+     * @return 流
+     */
+    default <U, K, R> Stream<R> hashJoin(Stream<U> other, Function<? super T, ? extends K> leftKey,
+                                         Function<? super U, ? extends K> rightKey,
+                                         BiFunction<? super T, ? super U, ? extends R> combiner) {
+        return Joins.hashJoin(this, other, leftKey, rightKey, combiner, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 哈希连接，构建侧的元素超过memoryLimit时把两侧的元素按键的哈希值分区写入临时文件，再逐个分区进行连接
+     * 两侧的元素都在第一次访问返回的流时才读取，构建侧超过memoryLimit个元素时，构建侧剩余的元素和探测侧的所有元素通过游标读取并写入临时文件，
+     * 写入临时文件的元素不会保留在内存中
+     * 分区连接时每次只在内存中保存一个分区的构建侧元素，结果不保持原来的顺序
+     * 写入临时文件时要求元素可以序列化，临时文件在遍历结束或返回的流不再被引用时删除
+     * 构建侧的元素个数不超过memoryLimit时与hashJoin(other, leftKey, rightKey, combiner)相同
+     * @param other 另一个流
+     * @param leftKey 当前流中元素的键
+     * @param rightKey other中元素的键
+     * @param combiner 合并函数，参数依次为当前流和other中的元素
+     * @param memoryLimit 构建侧在内存中最多保存的元素个数
+     * @return 流
+     */
+    default <U, K, R> Stream<R> hashJoin(Stream<U> other, Function<? super T, ? extends K> leftKey,
+                                         Function<? super U, ? extends K> rightKey,
+                                         BiFunction<? super T, ? super U, ? extends R> combiner, int memoryLimit) {
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException("memoryLimit必须大于0");
+        }
+        return Joins.hashJoin(this, other, leftKey, rightKey, combiner, memoryLimit);
+    }
+
+    /**
+     * 归并连接，要求当前流和other都已按键升序排列
+     * 同时遍历两个流，内存中只保存other中键相同的一组元素，结果按当前流的顺序排列
+     * @param other 另一个流
+     * @param leftKey 当前流中元素的键
+     * @param rightKey other中元素的键
+     * @param keyComparator 键的比较器
+     * @param combiner 合并函数，参数依次为当前流和other中的元素
+     * @return 流
+     */
+    default <U, K, R> Stream<R> mergeJoin(Stream<U> other, Function<? super T, ? extends K> leftKey,
+                                          Function<? super U, ? extends K> rightKey,
+                                          Comparator<? super K> keyComparator,
+                                          BiFunction<? super T, ? super U, ? extends R> combiner) {
+        return Joins.mergeJoin(this, other, leftKey, rightKey, keyComparator, combiner);
+    }
+
+    /**
+     * 半连接，保留键在other中出现过的元素
+     * 第一次访问返回的流时才读取other中所有元素的键
+     * @param other 另一个流
+     * @param leftKey 当前流中元素的键
+     * @param rightKey other中元素的键
+     * @return 流
+     */
+    default <U, K> Stream<T> semiJoin(Stream<U> other, Function<? super T, ? extends K> leftKey,
+                                      Function<? super U, ? extends K> rightKey) {
+        return new DeferredStream<>(() -> {
+            Set<K> keys = other.<K>map(rightKey::apply).toSet();
+            return filter(e -> keys.contains(leftKey.apply(e)));
+        });
+    }
+
+    /**
+     * 反连接，保留键没有在other中出现过的元素
+     * 第一次访问返回的流时才读取other中所有元素的键
+     * @param other 另一个流
+     * @param leftKey 当前流中元素的键
+     * @param rightKey other中元素的键
+     * @return 流
+     */
+    default <U, K> Stream<T> antiJoin(Stream<U> other, Function<? super T, ? extends K> leftKey,
+                                      Function<? super U, ? extends K> rightKey) {
+        return new DeferredStream<>(() -> {
+            Set<K> keys = other.<K>map(rightKey::apply).toSet();
+            return filter(e -> !keys.contains(leftKey.apply(e)));
+        });
     }
 }
@@ -0,0 +1,161 @@
+package byx.project.stream;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * 多个消费者共享的流缓存
+ * 源流的元素在第一次被访问时按段读入缓存，之后所有通过缓存的流访问这一段的消费者都直接使用缓存中的元素
+ * 有界时按淘汰策略淘汰缓存的段，并记录每一段在源流中的起始位置，被淘汰的段再次被访问时从起始位置重新计算
+ * @param <T> 元素类型
+ */
+final class StreamCache<T> {
+    private static final Object[] NO_ELEMENTS = new Object[0];
+
+    private final long maxWeight;
+    private final ToLongFunction<? super T> weigher;
+    private final Map<Integer, Segment> segments;
+    private final List<Stream<T>> checkpoints = new ArrayList<>();
+    private Stream<T> frontier;
+    private int computed;
+    private long weight;
+
+    private StreamCache(Stream<T> source, long maxWeight, ToLongFunction<? super T> weigher, EvictionPolicy policy) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.segments = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+        this.frontier = source.unmemoized();
+    }
+
+    /**
+     * 缓存所有元素
+     * @param source 源流
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> Stream<T> cache(Stream<T> source) {
+        return new StreamCache<>(source, Long.MAX_VALUE, null, EvictionPolicy.FIFO).head();
+    }
+
+    /**
+     * 缓存元素，缓存中元素的总权重超过maxWeight时淘汰缓存的段
+     * @param source 源流
+     * @param maxWeight 最大权重
+     * @param weigher 元素的权重
+     * @param policy 淘汰策略
+     * @param <T> 元素类型
+     * @return 流
+     */
+    static <T> Stream<T> cache(Stream<T> source, long maxWeight, ToLongFunction<? super T> weigher, EvictionPolicy policy) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("缓存的大小必须大于0");
+        }
+        return new StreamCache<>(source, maxWeight, Objects.requireNonNull(weigher), Objects.requireNonNull(policy)).head();
+    }
+
+    private boolean bounded() {
+        return weigher != null;
+    }
+
+    /**
+     * 整个流，第一次访问时才读取第一段
+     */
+    private Stream<T> head() {
+        return new DeferredStream<>(() -> node(0));
+    }
+
+    /**
+     * 从第i段开始的流
+     */
+    private Stream<T> node(int i) {
+        Object[] elements = segment(i);
+        if (elements.length == 0) {
+            return Stream.empty();
+        }
+        // 有界时流节点不直接引用段，每次访问时从缓存获取，以便段可以被淘汰
+        return bounded()
+                ? ChunkStream.create(() -> segment(i), 0, elements.length, () -> node(i + 1))
+                : ChunkStream.create(elements, 0, elements.length, () -> node(i + 1));
+    }
+
+    /**
+     * 获取第i段的元素
+     * @param i 段的索引
+     * @return 元素数组，超出流的末尾时返回空数组
+     */
+    synchronized Object[] segment(int i) {
+        Segment seg = segments.get(i);
+        if (seg != null) {
+            return seg.elements;
+        }
+        if (i < computed) {
+            // 被淘汰的段从记录的起始位置重新计算
+            seg = read(checkpoints.get(i));
+            seg.next = null;
+            store(i, seg);
+            return seg.elements;
+        }
+        while (computed <= i) {
+            if (frontier.end()) {
+                return NO_ELEMENTS;
+            }
+            if (bounded()) {
+                checkpoints.add(frontier);
+            }
+            seg = read(frontier);
+            frontier = seg.next;
+            seg.next = null;
+            store(computed++, seg);
+        }
+        return seg.elements;
+    }
+
+    /**
+     * 从流中读取一段元素
+     */
+    private Segment read(Stream<T> s) {
+        Object[] buf = new Object[ChunkStream.CHUNK_SIZE];
+        int n = 0;
+        while (n < buf.length && !s.end()) {
+            buf[n++] = s.first();
+            s = s.remain();
+        }
+        return new Segment(n == buf.length ? buf : Arrays.copyOf(buf, n), s);
+    }
+
+    /**
+     * 把一段元素放入缓存，总权重超过上限时按淘汰策略淘汰其他段
+     */
+    @SuppressWarnings("unchecked")
+    private void store(int i, Segment seg) {
+        if (bounded()) {
+            for (Object e : seg.elements) {
+                seg.weight += weigher.applyAsLong((T) e);
+            }
+            weight += seg.weight;
+        }
+        segments.put(i, seg);
+        Iterator<Segment> it = segments.values().iterator();
+        while (weight > maxWeight && segments.size() > 1) {
+            Segment eldest = it.next();
+            if (eldest != seg) {
+                weight -= eldest.weight;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 缓存中的一段元素
+     */
+    private final class Segment {
+        final Object[] elements;
+        Stream<T> next;
+        long weight;
+
+        Segment(Object[] elements, Stream<T> next) {
+            this.elements = elements;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package byx.project.stream;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 遍历流的迭代器
+ * 遇到由数组中一段元素组成的流节点时直接遍历数组，不会为每个元素创建流节点
+ * @param <T> 元素类型
+ */
+final class StreamIterator<T> implements Iterator<T> {
+    private Stream<T> current;
+    private ChunkStream<T> chunk;
+    private int index;
+    // 已经返回了current的第一个元素，下次调用hasNext时才计算剩余的流
+    private boolean advance;
+
+    StreamIterator(Stream<T> stream) {
+        this.current = stream;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (advance) {
+            current = current instanceof LazyNode<T> n ? n.remain() : current.remain();
+            advance = false;
+        }
+        while (true) {
+            if (chunk != null) {
+                if (index < chunk.to) {
+                    return true;
+                }
+                current = chunk.rest();
+                chunk = null;
+            }
+            if (current.end()) {
+                return false;
+            }
+            if (current instanceof ChunkStream<T> c) {
+                chunk = c;
+                index = c.from;
+            } else {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("当前流已结束");
+        }
+        if (chunk != null) {
+            return chunk.element(index++);
+        }
+        advance = true;
+        return current instanceof LazyNode<T> n ? n.first() : current.first();
+    }
+}
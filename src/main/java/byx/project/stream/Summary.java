@@ -0,0 +1,86 @@
+package byx.project.stream;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * 一次遍历中同时进行的多个聚合操作的结果
+ * 通过传入summarize的Collector对象获取对应的结果
+ */
+public final class Summary {
+    private final Map<Collector<?, ?, ?>, Object> results;
+
+    private Summary(Map<Collector<?, ?, ?>, Object> results) {
+        this.results = results;
+    }
+
+    /**
+     * 获取聚合结果
+     * @param collector 传入summarize的Collector
+     * @param <R> 结果类型
+     * @return 聚合结果
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(Collector<?, ?, R> collector) {
+        if (!results.containsKey(collector)) {
+            throw new IllegalArgumentException("不包含该聚合操作：" + collector);
+        }
+        return (R) results.get(collector);
+    }
+
+    @Override
+    public String toString() {
+        return results.values().toString();
+    }
+
+    /**
+     * 把多个Collector组合成一个Collector，每个元素依次传给所有的Collector
+     * @param collectors collectors
+     * @param <T> 元素类型
+     * @return 组合后的Collector
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <T> Collector<T, Object[], Summary> combine(List<? extends Collector<? super T, ?, ?>> collectors) {
+        Collector<?, ?, ?>[] cs = collectors.toArray(new Collector<?, ?, ?>[0]);
+        int n = cs.length;
+        Supplier<Object>[] suppliers = new Supplier[n];
+        BiConsumer<Object, ? super T>[] accumulators = new BiConsumer[n];
+        BinaryOperator<Object>[] combiners = new BinaryOperator[n];
+        Function<Object, Object>[] finishers = new Function[n];
+        for (int i = 0; i < n; i++) {
+            Collector c = cs[i];
+            suppliers[i] = c.supplier();
+            accumulators[i] = c.accumulator();
+            combiners[i] = c.combiner();
+            finishers[i] = c.finisher();
+        }
+        return Collector.of(() -> {
+            Object[] containers = new Object[n];
+            for (int i = 0; i < n; i++) {
+                containers[i] = suppliers[i].get();
+            }
+            return containers;
+        }, (containers, e) -> {
+            for (int i = 0; i < n; i++) {
+                ((BiConsumer<Object, T>) accumulators[i]).accept(containers[i], e);
+            }
+        }, (c1, c2) -> {
+            for (int i = 0; i < n; i++) {
+                c1[i] = combiners[i].apply(c1[i], c2[i]);
+            }
+            return c1;
+        }, containers -> {
+            Map<Collector<?, ?, ?>, Object> results = new IdentityHashMap<>(n);
+            for (int i = 0; i < n; i++) {
+                results.put(cs[i], finishers[i].apply(containers[i]));
+            }
+            return new Summary(results);
+        });
+    }
+}
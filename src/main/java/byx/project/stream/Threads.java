@@ -0,0 +1,43 @@
+package byx.project.stream;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台线程的工厂
+ * 项目以Java 17为目标，不能使用虚拟线程，后台任务都在守护线程中执行，不会阻止JVM退出
+ */
+final class Threads {
+    /**
+     * 执行后台任务的线程池
+     */
+    static final Executor EXECUTOR = Executors.newCachedThreadPool(daemonFactory());
+
+    /**
+     * 在对象不再被引用时停止后台任务
+     */
+    static final Cleaner CLEANER = Cleaner.create();
+
+    private Threads() {
+    }
+
+    private static ThreadFactory daemonFactory() {
+        AtomicInteger cnt = new AtomicInteger();
+        return task -> newThread(task, "stream-worker-" + cnt.incrementAndGet());
+    }
+
+    /**
+     * 创建后台线程
+     * @param task 任务
+     * @param name 线程名称
+     * @return 尚未启动的守护线程
+     */
+    static Thread newThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,672 @@
+package byx.project.stream;
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * 窗口操作的实现
+ * window返回的窗口是共享缓冲区上的只读视图，缓冲区写满时才把与下一个窗口重叠的元素复制到新的缓冲区，
+ * 旧的缓冲区不会再被修改，因此已经返回的窗口始终有效，每个元素平均只复制常数次
+ * 基本类型的流的window返回数组，每个窗口都是新的数组，调用方可以修改
+ * slidingAggregate使用双栈法：新元素压入后栈并累积后栈的聚合值，前栈为空时把后栈的元素倒入前栈并计算后缀聚合值，
+ * 窗口的聚合值由前栈栈顶的后缀聚合值和后栈的聚合值合并得到，每个元素平均只参与常数次聚合操作，
+ * 聚合操作只需要满足结合律，不需要可逆
+ */
+final class Windows {
+    private Windows() {
+    }
+
+    /**
+     * 检查窗口大小和步长
+     */
+    static void check(int size, int step) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size必须大于0");
+        }
+        if (step <= 0) {
+            throw new IllegalArgumentException("step必须大于0");
+        }
+    }
+
+    /**
+     * 生成窗口
+     * @param source 源流
+     * @param size 窗口大小
+     * @param step 步长
+     * @param <T> 元素类型
+     * @return 由窗口组成的流
+     */
+    static <T> Stream<List<T>> window(Stream<T> source, int size, int step) {
+        check(size, step);
+        // 第一次访问时才读取第一个窗口的元素
+        return new DeferredStream<>(() -> Cons.fromIterator(new WindowIterator<>(source.iterator(), size, step)));
+    }
+
+    /**
+     * 计算每个滑动窗口中元素的聚合值
+     * @param source 源流
+     * @param size 窗口大小
+     * @param identity 聚合操作的单位元
+     * @param op 聚合操作
+     * @param <T> 元素类型
+     * @return 由聚合值组成的流
+     */
+    static <T> Stream<T> slidingAggregate(Stream<T> source, int size, T identity, BinaryOperator<T> op) {
+        check(size, 1);
+        // 第一次访问时才读取第一个窗口的元素
+        return new DeferredStream<>(() -> Cons.fromIterator(aggregate(source.iterator(), size, identity, op)));
+    }
+
+    /**
+     * 在迭代器上依次计算每个滑动窗口的聚合值
+     */
+    private static <T> Iterator<T> aggregate(Iterator<T> it, int size, T identity, BinaryOperator<T> op) {
+        Aggregator<T> agg = new Aggregator<>(size, identity, op);
+        return new Iterator<>() {
+            boolean full;
+
+            @Override
+            public boolean hasNext() {
+                return full ? it.hasNext() : fill();
+            }
+
+            private boolean fill() {
+                while (agg.count < size - 1 && it.hasNext()) {
+                    agg.push(it.next());
+                }
+                full = agg.count == size - 1;
+                return full && it.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("当前流已结束");
+                }
+                if (agg.count == size) {
+                    agg.pop();
+                }
+                agg.push(it.next());
+                return agg.query();
+            }
+        };
+    }
+
+    /**
+     * 计算每个滑动窗口中元素的聚合值
+     * 只根据各段的长度判断元素个数是否足够，元素在第一次访问聚合值时才按顺序读取，
+     * 迭代器和聚合器属于返回的流，流会缓存计算结果，因此每个元素只读取一次
+     * @param source 源流
+     * @param size 窗口大小
+     * @param identity 聚合操作的单位元
+     * @param op 聚合操作
+     * @return 由聚合值组成的流
+     */
+    static IntStream slidingAggregate(IntStream source, int size, int identity, IntBinaryOperator op) {
+        check(size, 1);
+        if (source.skip(size - 1).end()) {
+            return IntStream.empty();
+        }
+        PrimitiveIterator.OfInt it = IntChunk.iterator(source);
+        IntAggregator agg = new IntAggregator(size, identity, op);
+        return IntChunk.fromIterator(new PrimitiveIterator.OfInt() {
+            boolean full;
+
+            @Override
+            public boolean hasNext() {
+                return !full || it.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                if (full) {
+                    agg.pop();
+                    agg.push(it.nextInt());
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        agg.push(it.nextInt());
+                    }
+                    full = true;
+                }
+                return agg.query();
+            }
+        });
+    }
+
+    static LongStream slidingAggregate(LongStream source, int size, long identity, LongBinaryOperator op) {
+        check(size, 1);
+        if (source.skip(size - 1).end()) {
+            return LongStream.empty();
+        }
+        PrimitiveIterator.OfLong it = LongChunk.iterator(source);
+        LongAggregator agg = new LongAggregator(size, identity, op);
+        return LongChunk.fromIterator(new PrimitiveIterator.OfLong() {
+            boolean full;
+
+            @Override
+            public boolean hasNext() {
+                return !full || it.hasNext();
+            }
+
+            @Override
+            public long nextLong() {
+                if (full) {
+                    agg.pop();
+                    agg.push(it.nextLong());
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        agg.push(it.nextLong());
+                    }
+                    full = true;
+                }
+                return agg.query();
+            }
+        });
+    }
+
+    static DoubleStream slidingAggregate(DoubleStream source, int size, double identity, DoubleBinaryOperator op) {
+        check(size, 1);
+        if (source.skip(size - 1).end()) {
+            return DoubleStream.empty();
+        }
+        PrimitiveIterator.OfDouble it = DoubleChunk.iterator(source);
+        DoubleAggregator agg = new DoubleAggregator(size, identity, op);
+        return DoubleChunk.fromIterator(new PrimitiveIterator.OfDouble() {
+            boolean full;
+
+            @Override
+            public boolean hasNext() {
+                return !full || it.hasNext();
+            }
+
+            @Override
+            public double nextDouble() {
+                if (full) {
+                    agg.pop();
+                    agg.push(it.nextDouble());
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        agg.push(it.nextDouble());
+                    }
+                    full = true;
+                }
+                return agg.query();
+            }
+        });
+    }
+
+    /**
+     * 生成元素类型为基本类型的流的窗口，每个窗口复制到一个新的数组中
+     * @param source 源流
+     * @param size 窗口大小
+     * @param step 步长
+     * @return 由窗口组成的流
+     */
+    static Stream<int[]> window(IntStream source, int size, int step) {
+        check(size, step);
+        return new DeferredStream<>(() -> Cons.fromIterator(new IntWindowIterator(IntChunk.iterator(source), size, step)));
+    }
+
+    static Stream<long[]> window(LongStream source, int size, int step) {
+        check(size, step);
+        return new DeferredStream<>(() -> Cons.fromIterator(new LongWindowIterator(LongChunk.iterator(source), size, step)));
+    }
+
+    static Stream<double[]> window(DoubleStream source, int size, int step) {
+        check(size, step);
+        return new DeferredStream<>(() -> Cons.fromIterator(new DoubleWindowIterator(DoubleChunk.iterator(source), size, step)));
+    }
+
+    /**
+     * 双栈法维护的窗口聚合值
+     * back保存后栈的元素，front保存前栈中每个位置到栈底的后缀聚合值，frontTop为前栈栈顶的位置
+     */
+    private static final class Aggregator<T> {
+        private final Object[] back;
+        private final Object[] front;
+        private final T identity;
+        private final BinaryOperator<T> op;
+        private int backSize;
+        private T backAgg;
+        private int frontTop;
+        private int frontSize;
+        int count;
+
+        Aggregator(int size, T identity, BinaryOperator<T> op) {
+            this.back = new Object[size];
+            this.front = new Object[size];
+            this.identity = identity;
+            this.op = op;
+            this.backAgg = identity;
+        }
+
+        void push(T e) {
+            back[backSize++] = e;
+            backAgg = op.apply(backAgg, e);
+            count++;
+        }
+
+        @SuppressWarnings("unchecked")
+        void pop() {
+            if (frontTop == frontSize) {
+                // 前栈为空时把后栈中的元素倒入前栈，从新到旧计算后缀聚合值
+                T agg = identity;
+                for (int i = backSize - 1; i >= 0; i--) {
+                    agg = op.apply((T) back[i], agg);
+                    front[i] = agg;
+                    back[i] = null;
+                }
+                frontTop = 0;
+                frontSize = backSize;
+                backSize = 0;
+                backAgg = identity;
+            }
+            front[frontTop++] = null;
+            count--;
+        }
+
+        @SuppressWarnings("unchecked")
+        T query() {
+            return frontTop == frontSize ? backAgg : op.apply((T) front[frontTop], backAgg);
+        }
+    }
+
+    private static final class IntAggregator {
+        private final int[] back;
+        private final int[] front;
+        private final int identity;
+        private final IntBinaryOperator op;
+        private int backSize;
+        private int backAgg;
+        private int frontTop;
+        private int frontSize;
+
+        IntAggregator(int size, int identity, IntBinaryOperator op) {
+            this.back = new int[size];
+            this.front = new int[size];
+            this.identity = identity;
+            this.op = op;
+            this.backAgg = identity;
+        }
+
+        void push(int e) {
+            back[backSize++] = e;
+            backAgg = op.applyAsInt(backAgg, e);
+        }
+
+        void pop() {
+            if (frontTop == frontSize) {
+                int agg = identity;
+                for (int i = backSize - 1; i >= 0; i--) {
+                    agg = op.applyAsInt(back[i], agg);
+                    front[i] = agg;
+                }
+                frontTop = 0;
+                frontSize = backSize;
+                backSize = 0;
+                backAgg = identity;
+            }
+            frontTop++;
+        }
+
+        int query() {
+            return frontTop == frontSize ? backAgg : op.applyAsInt(front[frontTop], backAgg);
+        }
+    }
+
+    private static final class LongAggregator {
+        private final long[] back;
+        private final long[] front;
+        private final long identity;
+        private final LongBinaryOperator op;
+        private int backSize;
+        private long backAgg;
+        private int frontTop;
+        private int frontSize;
+
+        LongAggregator(int size, long identity, LongBinaryOperator op) {
+            this.back = new long[size];
+            this.front = new long[size];
+            this.identity = identity;
+            this.op = op;
+            this.backAgg = identity;
+        }
+
+        void push(long e) {
+            back[backSize++] = e;
+            backAgg = op.applyAsLong(backAgg, e);
+        }
+
+        void pop() {
+            if (frontTop == frontSize) {
+                long agg = identity;
+                for (int i = backSize - 1; i >= 0; i--) {
+                    agg = op.applyAsLong(back[i], agg);
+                    front[i] = agg;
+                }
+                frontTop = 0;
+                frontSize = backSize;
+                backSize = 0;
+                backAgg = identity;
+            }
+            frontTop++;
+        }
+
+        long query() {
+            return frontTop == frontSize ? backAgg : op.applyAsLong(front[frontTop], backAgg);
+        }
+    }
+
+    private static final class DoubleAggregator {
+        private final double[] back;
+        private final double[] front;
+        private final double identity;
+        private final DoubleBinaryOperator op;
+        private int backSize;
+        private double backAgg;
+        private int frontTop;
+        private int frontSize;
+
+        DoubleAggregator(int size, double identity, DoubleBinaryOperator op) {
+            this.back = new double[size];
+            this.front = new double[size];
+            this.identity = identity;
+            this.op = op;
+            this.backAgg = identity;
+        }
+
+        void push(double e) {
+            back[backSize++] = e;
+            backAgg = op.applyAsDouble(backAgg, e);
+        }
+
+        void pop() {
+            if (frontTop == frontSize) {
+                double agg = identity;
+                for (int i = backSize - 1; i >= 0; i--) {
+                    agg = op.applyAsDouble(back[i], agg);
+                    front[i] = agg;
+                }
+                frontTop = 0;
+                frontSize = backSize;
+                backSize = 0;
+                backAgg = identity;
+            }
+            frontTop++;
+        }
+
+        double query() {
+            return frontTop == frontSize ? backAgg : op.applyAsDouble(front[frontTop], backAgg);
+        }
+    }
+
+    /**
+     * 在源流的迭代器上依次生成窗口，取出一个窗口之后，下次调用hasNext时才读取下一个窗口的元素
+     */
+    private static final class WindowIterator<T> implements Iterator<List<T>> {
+        private final Iterator<T> source;
+        private final int size;
+        private final int step;
+        private Object[] buffer;
+        private int start;
+        private int filled;
+        private boolean ready;
+        private boolean advance = true;
+
+        WindowIterator(Iterator<T> source, int size, int step) {
+            this.source = source;
+            this.size = size;
+            this.step = step;
+            this.buffer = new Object[Math.max(2 * size, 16)];
+        }
+
+        /**
+         * 移动到下一个窗口并读取其中的元素
+         */
+        private void advance() {
+            if (ready) {
+                int read = filled - start;
+                if (step < read) {
+                    start += step;
+                } else {
+                    // 步长超过已读取的元素个数时跳过中间的元素
+                    start = filled;
+                    for (int i = read; i < step && source.hasNext(); i++) {
+                        source.next();
+                    }
+                }
+            }
+            if (start + size > buffer.length) {
+                // 把已读取的元素复制到新的缓冲区，旧的缓冲区仍然被之前的窗口使用
+                Object[] newBuffer = new Object[buffer.length];
+                System.arraycopy(buffer, start, newBuffer, 0, filled - start);
+                filled -= start;
+                start = 0;
+                buffer = newBuffer;
+            }
+            while (filled < start + size && source.hasNext()) {
+                buffer[filled++] = source.next();
+            }
+            ready = filled == start + size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (advance) {
+                advance();
+                advance = false;
+            }
+            return ready;
+        }
+
+        @Override
+        public List<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("当前流已结束");
+            }
+            advance = true;
+            return new View<>(buffer, start, size);
+        }
+    }
+
+    /**
+     * 在基本类型的迭代器上依次生成窗口，与上一个窗口重叠的元素在缓冲区中原地移动，每个窗口只创建一个数组
+     */
+    private static final class IntWindowIterator implements Iterator<int[]> {
+        private final PrimitiveIterator.OfInt source;
+        private final int size;
+        private final int step;
+        // 当前窗口的元素，在原地移动重叠的部分，返回时复制一次
+        private final int[] buffer;
+        private boolean started;
+        private boolean ready;
+        private boolean advance = true;
+
+        IntWindowIterator(PrimitiveIterator.OfInt source, int size, int step) {
+            this.source = source;
+            this.size = size;
+            this.step = step;
+            this.buffer = new int[size];
+        }
+
+        private void advance() {
+            int n = 0;
+            if (started) {
+                if (step < size) {
+                    n = size - step;
+                    System.arraycopy(buffer, step, buffer, 0, n);
+                } else {
+                    for (int i = size; i < step && source.hasNext(); i++) {
+                        source.nextInt();
+                    }
+                }
+            }
+            started = true;
+            while (n < size && source.hasNext()) {
+                buffer[n++] = source.nextInt();
+            }
+            ready = n == size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (advance) {
+                advance();
+                advance = false;
+            }
+            return ready;
+        }
+
+        @Override
+        public int[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("当前流已结束");
+            }
+            advance = true;
+            return buffer.clone();
+        }
+    }
+
+
+    private static final class LongWindowIterator implements Iterator<long[]> {
+        private final PrimitiveIterator.OfLong source;
+        private final int size;
+        private final int step;
+        // 当前窗口的元素，在原地移动重叠的部分，返回时复制一次
+        private final long[] buffer;
+        private boolean started;
+        private boolean ready;
+        private boolean advance = true;
+
+        LongWindowIterator(PrimitiveIterator.OfLong source, int size, int step) {
+            this.source = source;
+            this.size = size;
+            this.step = step;
+            this.buffer = new long[size];
+        }
+
+        private void advance() {
+            int n = 0;
+            if (started) {
+                if (step < size) {
+                    n = size - step;
+                    System.arraycopy(buffer, step, buffer, 0, n);
+                } else {
+                    for (int i = size; i < step && source.hasNext(); i++) {
+                        source.nextLong();
+                    }
+                }
+            }
+            started = true;
+            while (n < size && source.hasNext()) {
+                buffer[n++] = source.nextLong();
+            }
+            ready = n == size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (advance) {
+                advance();
+                advance = false;
+            }
+            return ready;
+        }
+
+        @Override
+        public long[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("当前流已结束");
+            }
+            advance = true;
+            return buffer.clone();
+        }
+    }
+
+
+    private static final class DoubleWindowIterator implements Iterator<double[]> {
+        private final PrimitiveIterator.OfDouble source;
+        private final int size;
+        private final int step;
+        // 当前窗口的元素，在原地移动重叠的部分，返回时复制一次
+        private final double[] buffer;
+        private boolean started;
+        private boolean ready;
+        private boolean advance = true;
+
+        DoubleWindowIterator(PrimitiveIterator.OfDouble source, int size, int step) {
+            this.source = source;
+            this.size = size;
+            this.step = step;
+            this.buffer = new double[size];
+        }
+
+        private void advance() {
+            int n = 0;
+            if (started) {
+                if (step < size) {
+                    n = size - step;
+                    System.arraycopy(buffer, step, buffer, 0, n);
+                } else {
+                    for (int i = size; i < step && source.hasNext(); i++) {
+                        source.nextDouble();
+                    }
+                }
+            }
+            started = true;
+            while (n < size && source.hasNext()) {
+                buffer[n++] = source.nextDouble();
+            }
+            ready = n == size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (advance) {
+                advance();
+                advance = false;
+            }
+            return ready;
+        }
+
+        @Override
+        public double[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("当前流已结束");
+            }
+            advance = true;
+            return buffer.clone();
+        }
+    }
+
+
+    /**
+     * 数组中一段元素的只读视图
+     */
+    private static final class View<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] elements;
+        private final int from;
+        private final int size;
+
+        View(Object[] elements, int from, int size) {
+            this.elements = elements;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            return (T) elements[from + index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package byx.project.stream;
+
+import java.util.function.BiFunction;
+
+/**
+ * zipWith操作生成的流节点
+ * @param <A> 第一个源流的元素类型
+ * @param <B> 第二个源流的元素类型
+ * @param <T> 元素类型
+ */
+final class ZipNode<A, B, T> extends LazyNode<T> {
+    private Stream<A> s1;
+    private Stream<B> s2;
+    private BiFunction<A, B, T> zipper;
+
+    ZipNode(Stream<A> s1, Stream<B> s2, BiFunction<A, B, T> zipper, boolean memoized) {
+        super(memoized);
+        this.s1 = s1;
+        this.s2 = s2;
+        this.zipper = zipper;
+    }
+
+    @Override
+    T computeFirst() {
+        return zipper.apply(s1.first(), s2.first());
+    }
+
+    @Override
+    Stream<T> computeRemain() {
+        return s1.remain().zipWith(s2.remain(), zipper);
+    }
+
+    @Override
+    LazyNode<T> unmemoizedCopy() {
+        return new ZipNode<>(s1.unmemoized(), s2.unmemoized(), zipper, false);
+    }
+
+    @Override
+    void release() {
+        s1 = null;
+        s2 = null;
+        zipper = null;
+    }
+}
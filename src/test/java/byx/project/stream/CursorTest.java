@@ -0,0 +1,86 @@
+package byx.project.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorTest {
+    @Test
+    public void testCursor() {
+        Cursor<Integer> c = Stream.of(1, 2, 3, 4).cursor();
+        assertTrue(c.hasNext());
+        assertEquals(1, c.next());
+        assertEquals(9, c.collect(0, Integer::sum));
+        assertFalse(c.hasNext());
+        assertThrows(NoSuchElementException.class, c::next);
+
+        assertEquals(0, Stream.empty().cursor().count());
+        assertEquals(5, Stream.of(0, 1, 2, 3, 4).cursor().count());
+        List<Integer> list = new ArrayList<>();
+        Stream.fromGenerator(1, n -> n + 1).filter(n -> n % 2 == 0).limit(3).cursor().forEachRemaining(list::add);
+        assertEquals(List.of(2, 4, 6), list);
+        assertEquals(List.of(1, 1, 2, 2), collect(Stream.of(1, 2).flatMap(n -> Stream.of(n, n)).cursor()));
+        assertEquals(List.of("a", "b"), collect(Stream.of("a").concat(Stream.of("b")).cursor()));
+    }
+
+    @Test
+    public void testCursorKeepsStream() {
+        // 游标不影响原来的流，原来的流仍然可以重复遍历
+        Stream<Integer> s = Stream.fromGenerator(0, n -> n + 1).map(n -> n * 2).limit(1000);
+        assertEquals(1000, s.cursor().count());
+        assertEquals(1000, s.cursor().count());
+        assertEquals(999_000, s.reduce(0, Integer::sum));
+
+        Stream<Integer> t = Stream.fromGenerator(0, n -> n + 1).limit(10);
+        t.skip(5).first();
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), collect(t.cursor()));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), t.toList());
+    }
+
+    @Test
+    public void testConstantMemory() throws Exception {
+        // 在堆大小受限的子进程中持有流的头部遍历1亿个元素
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = location(Main.class) + File.pathSeparator + location(Stream.class);
+        Process p = new ProcessBuilder(java, "-Xmx64m", "-cp", classpath, Main.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(p.waitFor(5, TimeUnit.MINUTES));
+        assertEquals(0, p.exitValue(), output);
+        assertEquals("100000000 200000000 0", output.trim());
+    }
+
+    private static String location(Class<?> c) throws URISyntaxException {
+        return Path.of(c.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+
+    private static <T> List<T> collect(Cursor<T> c) {
+        List<T> list = new ArrayList<>();
+        c.forEachRemaining(list::add);
+        return list;
+    }
+
+    public static class Main {
+        public static void main(String[] args) {
+            Stream<Integer> s = Stream.fromGenerator(0, n -> n + 1).limit(100_000_000);
+            long cnt = s.cursor().count();
+            Stream<Integer> t = Stream.fromGenerator(0, n -> n + 1)
+                    .map(n -> n % 10)
+                    .filter(n -> n < 5)
+                    .flatMap(n -> Stream.of(n, n))
+                    .limit(100_000_000);
+            long sum = t.cursor().collect(0L, (acc, n) -> acc + n);
+            System.out.println(cnt + " " + sum + " " + s.first());
+        }
+    }
+}
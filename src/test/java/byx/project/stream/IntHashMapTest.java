@@ -0,0 +1,91 @@
+package byx.project.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntHashMapTest {
+    @Test
+    public void testIntHashMap() {
+        IntHashMap<String> map = new IntHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(-1, "minus one"));
+        assertEquals("zero", map.put(0, "0"));
+        assertEquals(2, map.size());
+        assertEquals("0", map.get(0));
+        assertNull(map.get(1));
+        assertEquals("x", map.getOrDefault(1, "x"));
+        assertTrue(map.containsKey(-1));
+        assertFalse(map.containsKey(1));
+        assertEquals("1", map.computeIfAbsent(1, String::valueOf));
+        assertEquals("1", map.computeIfAbsent(1, k -> "other"));
+        int[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(new int[]{-1, 0, 1}, keys);
+        assertEquals(Map.of(-1, "minus one", 0, "0", 1, "1"), map.toMap());
+
+        // 与HashMap比较
+        Random random = new Random(7);
+        IntHashMap<Integer> counts = new IntHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int k = random.nextInt(5000) * 1024;
+            counts.put(k, counts.getOrDefault(k, 0) + 1);
+            expected.merge(k, 1, Integer::sum);
+        }
+        assertEquals(expected, counts.toMap());
+        assertEquals(expected.size(), counts.size());
+        assertEquals(new IntHashMap<>(), new IntHashMap<>(100));
+        assertEquals(256, new IntHashMap<>(100).capacity());
+
+        // 容量和插入顺序不同的哈希表比较内容，哈希值与toMap()的结果相同
+        IntHashMap<Integer> copy = new IntHashMap<>(expected.size());
+        int[] countKeys = counts.keys();
+        for (int i = countKeys.length - 1; i >= 0; i--) {
+            copy.put(countKeys[i], counts.get(countKeys[i]));
+        }
+        assertEquals(counts, copy);
+        assertEquals(expected.hashCode(), counts.hashCode());
+        assertEquals(counts.hashCode(), copy.hashCode());
+        copy.put(countKeys[0], -1);
+        assertNotEquals(counts, copy);
+        IntHashMap<String> nulls = new IntHashMap<>();
+        nulls.put(1, null);
+        IntHashMap<String> other = new IntHashMap<>();
+        other.put(2, null);
+        assertNotEquals(nulls, other);
+    }
+
+    @Test
+    public void testLongHashMap() {
+        LongHashMap<String> map = new LongHashMap<>(4);
+        map.put(Long.MAX_VALUE, "max");
+        map.put(Long.MIN_VALUE, "min");
+        map.put(1L << 40, "big");
+        assertEquals("max", map.get(Long.MAX_VALUE));
+        assertEquals("big", map.get(1L << 40));
+        assertNull(map.get(0));
+        assertEquals(3, map.size());
+
+        LongHashMap<Long> squares = new LongHashMap<>();
+        for (long i = 0; i < 10_000; i++) {
+            squares.put(i * 1_000_000_007L, i * i);
+        }
+        for (long i = 0; i < 10_000; i++) {
+            assertEquals(i * i, squares.get(i * 1_000_000_007L));
+        }
+        assertEquals(10_000, squares.keys().length);
+        assertEquals(squares.toMap().hashCode(), squares.hashCode());
+        LongHashMap<Long> same = new LongHashMap<>();
+        squares.forEach((v, k) -> same.put(k, v));
+        assertEquals(squares, same);
+        same.put(-1, 0L);
+        assertNotEquals(squares, same);
+    }
+}
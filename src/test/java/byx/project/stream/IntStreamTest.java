@@ -0,0 +1,218 @@
+package byx.project.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntStreamTest {
+    @Test
+    public void testEmptyStream() {
+        assertTrue(IntStream.empty().end());
+        assertEquals(0, IntStream.empty().count());
+        assertEquals(0, IntStream.of().toArray().length);
+        assertTrue(LongStream.empty().end());
+        assertTrue(DoubleStream.empty().end());
+    }
+
+    @Test
+    public void testGenerateStream() {
+        assertArrayEquals(new int[]{1, 2, 3}, IntStream.of(1, 2, 3).toArray());
+        assertArrayEquals(new int[]{3, 4, 5, 6}, IntStream.range(3, 7).toArray());
+        assertTrue(IntStream.range(7, 3).end());
+        assertArrayEquals(new int[]{1, 2, 4, 8}, IntStream.iterate(1, n -> n * 2).limit(4).toArray());
+        assertArrayEquals(new long[]{10, 11, 12}, LongStream.range(10, 13).toArray());
+        assertArrayEquals(new double[]{1, 0.5, 0.25}, DoubleStream.iterate(1, n -> n / 2).limit(3).toArray());
+    }
+
+    @Test
+    public void testOperations() {
+        assertArrayEquals(new int[]{4, 16, 36}, IntStream.range(1, 7).filter(n -> n % 2 == 0).map(n -> n * n).toArray());
+        assertArrayEquals(new int[]{3, 4}, IntStream.of(1, 2, 3, 4).skip(2).toArray());
+        assertEquals(100, IntStream.iterate(0, n -> n + 1).filter(n -> n % 1000 == 0).limit(100).count());
+        assertEquals(List.of("1", "2"), IntStream.of(1, 2).mapToObj(String::valueOf).toList());
+        assertEquals(List.of(1, 2, 3), IntStream.range(1, 4).boxed().toList());
+        assertArrayEquals(new long[]{1, 2}, IntStream.of(1, 2).asLongStream().toArray());
+        assertArrayEquals(new double[]{1, 2}, IntStream.of(1, 2).asDoubleStream().toArray());
+    }
+
+    @Test
+    public void testStatistics() {
+        assertEquals(15, IntStream.range(1, 6).sum());
+        assertEquals(OptionalInt.of(-3), IntStream.of(5, -3, 8).min());
+        assertEquals(OptionalInt.of(8), IntStream.of(5, -3, 8).max());
+        assertEquals(OptionalInt.empty(), IntStream.empty().max());
+        assertEquals(OptionalDouble.of(2.5), IntStream.range(1, 5).average());
+        assertEquals(OptionalDouble.empty(), IntStream.empty().average());
+        assertEquals(5_000_050_000L, LongStream.range(1, 100_001).sum());
+        assertEquals(OptionalLong.of(1), LongStream.of(3, 1, 2).min());
+        assertEquals(6.0, DoubleStream.of(1.5, 2.5, 2).sum());
+        assertEquals(OptionalDouble.of(2.5), DoubleStream.of(1.5, 2.5, 2).max());
+    }
+
+    @Test
+    public void testMapToPrimitive() {
+        Stream<String> s = Stream.of("a", "bb", "ccc");
+        assertEquals(6, s.mapToInt(String::length).sum());
+        assertEquals(6, s.mapToLong(String::length).sum());
+        assertEquals(OptionalDouble.of(2), s.mapToDouble(String::length).average());
+    }
+
+    @Test
+    public void testSlidingAggregate() {
+        assertArrayEquals(new int[]{6, 9, 12}, IntStream.of(1, 2, 3, 4, 5).slidingAggregate(3, 0, Integer::sum).toArray());
+        assertArrayEquals(new int[]{3, 2, 5, 5}, IntStream.of(3, 1, 2, 2, 5, 4).slidingAggregate(3, Integer.MIN_VALUE, Math::max).toArray());
+        assertEquals(0, IntStream.of(1, 2).slidingAggregate(3, 0, Integer::sum).count());
+        assertArrayEquals(new long[]{3, 5, 7}, LongStream.range(1, 5).slidingAggregate(2, 0, Long::sum).toArray());
+        assertArrayEquals(new double[]{1.5, 2.5, 3.5}, DoubleStream.of(1, 2, 3, 4).slidingAggregate(2, 0, Double::sum)
+                .map(d -> d / 2).toArray());
+
+        // 与逐个窗口直接计算的结果比较
+        int[] arr = IntStream.iterate(7, n -> n * 31 % 1009).limit(1000).toArray();
+        int[] expected = new int[arr.length - 9];
+        for (int i = 0; i < expected.length; i++) {
+            int min = Integer.MAX_VALUE;
+            for (int j = i; j < i + 10; j++) {
+                min = Math.min(min, arr[j]);
+            }
+            expected[i] = min;
+        }
+        assertArrayEquals(expected, IntStream.of(arr).slidingAggregate(10, Integer.MAX_VALUE, Math::min).toArray());
+        assertThrows(IllegalArgumentException.class, () -> IntStream.of(1).slidingAggregate(0, 0, Integer::sum));
+
+        // 创建时不计算元素，每个结果流有独立的状态，重复遍历得到相同的结果
+        int[] calls = {0};
+        IntStream source = IntStream.range(0, 1000).map(n -> {
+            calls[0]++;
+            return n;
+        });
+        IntStream sums = source.slidingAggregate(3, 0, Integer::sum);
+        IntStream maxs = source.slidingAggregate(2, Integer.MIN_VALUE, Math::max);
+        assertEquals(0, calls[0]);
+        assertEquals(3, sums.first());
+        assertEquals(3, calls[0]);
+        assertEquals(1, maxs.first());
+        assertEquals(998, sums.count());
+        assertEquals(3 * 498501, sums.sum());
+        assertEquals(3 * 498501, sums.sum());
+        assertEquals(999, maxs.skip(998).first());
+        assertEquals(1000, calls[0]);
+        assertTrue(IntStream.range(0, 1000).slidingAggregate(1001, 0, Integer::sum).end());
+    }
+
+    @Test
+    public void testWindow() {
+        List<int[]> windows = IntStream.of(1, 2, 3, 4, 5).window(3, 1).toList();
+        assertEquals(3, windows.size());
+        assertArrayEquals(new int[]{1, 2, 3}, windows.get(0));
+        assertArrayEquals(new int[]{3, 4, 5}, windows.get(2));
+        windows.get(0)[2] = 0;
+        assertArrayEquals(new int[]{2, 3, 4}, windows.get(1));
+        // 修改返回的窗口不影响之后的窗口
+        Iterator<int[]> it = IntStream.of(1, 2, 3, 4).window(3, 1).iterator();
+        Arrays.fill(it.next(), 0);
+        assertArrayEquals(new int[]{2, 3, 4}, it.next());
+        assertEquals(2, IntStream.range(0, 5).window(2, 2).count());
+        assertArrayEquals(new int[]{5, 6}, IntStream.range(1, 8).window(2, 4).toList().get(1));
+        assertTrue(IntStream.of(1, 2).window(3, 1).end());
+        assertThrows(IllegalArgumentException.class, () -> IntStream.of(1).window(1, 0));
+        assertArrayEquals(new long[]{256, 257}, LongStream.range(0, 1000).window(2, 1).skip(256).first());
+        assertArrayEquals(new double[]{0.5, 0.25}, DoubleStream.iterate(1, n -> n / 2).window(2, 1).skip(1).first());
+
+        // 第一次访问时才读取元素
+        int[] calls = {0};
+        Stream<int[]> lazy = IntStream.iterate(0, n -> {
+            calls[0]++;
+            return n + 1;
+        }).window(3, 3);
+        assertEquals(0, calls[0]);
+        assertArrayEquals(new int[]{3, 4, 5}, lazy.remain().first());
+    }
+
+    @Test
+    public void testChunks() {
+        // 跨越多段的截取、跳过、映射和过滤
+        IntStream s = IntStream.range(0, 1000);
+        assertEquals(1000, s.count());
+        assertEquals(499500, s.sum());
+        assertArrayEquals(new int[]{254, 255, 256, 257}, s.skip(254).limit(4).toArray());
+        assertEquals(999, s.skip(999).first());
+        assertTrue(s.skip(1000).end());
+        assertEquals(500, s.filter(n -> n % 2 == 0).count());
+        assertArrayEquals(new long[]{510, 512}, s.map(n -> n * 2).asLongStream().skip(255).limit(2).toArray());
+        assertEquals(5_000_000_050_000_000L, LongStream.range(1, 100_000_001).sum());
+        assertArrayEquals(new long[]{Long.MAX_VALUE - 1}, LongStream.range(Long.MAX_VALUE - 1, Long.MAX_VALUE).toArray());
+        assertEquals(300, LongStream.range(Long.MIN_VALUE, Long.MAX_VALUE).limit(300).count());
+
+        // 元素在第一次被访问时才计算，并且只计算一次
+        int[] calls = {0};
+        IntStream mapped = IntStream.range(0, 1000).map(n -> {
+            calls[0]++;
+            return n + 1;
+        });
+        assertEquals(0, calls[0]);
+        assertEquals(1, mapped.first());
+        assertEquals(1, calls[0]);
+        assertEquals(1000, mapped.count());
+        assertEquals(1, calls[0]);
+        assertEquals(500500, mapped.sum());
+        assertEquals(500500, mapped.sum());
+        assertEquals(1000, calls[0]);
+
+        // 跳过的元素不会映射，包括同一段内被跳过的元素
+        int[] mappedCalls = {0};
+        IntStream expensive = IntStream.range(0, 1000).map(n -> {
+            mappedCalls[0]++;
+            return n * 2;
+        });
+        assertEquals(20, expensive.skip(10).first());
+        assertEquals(1, mappedCalls[0]);
+        assertArrayEquals(new int[]{600, 602}, expensive.skip(300).limit(2).toArray());
+        assertEquals(3, mappedCalls[0]);
+        assertEquals(999_000, expensive.sum());
+        assertEquals(1000, mappedCalls[0]);
+        long[] longCalls = {0};
+        assertEquals(30L, LongStream.range(0, 1000).map(n -> {
+            longCalls[0]++;
+            return n * 3;
+        }).skip(10).first());
+        assertEquals(1, longCalls[0]);
+        double[] doubleCalls = {0};
+        assertEquals(5.0, DoubleStream.iterate(0, n -> n + 1).map(n -> {
+            doubleCalls[0]++;
+            return n / 2;
+        }).skip(10).first());
+        assertEquals(1, doubleCalls[0]);
+
+        int[] steps = {0};
+        assertArrayEquals(new int[]{0, 1, 2}, IntStream.iterate(0, n -> {
+            steps[0]++;
+            return n + 1;
+        }).limit(3).toArray());
+        assertEquals(2, steps[0]);
+
+        // 由对象流映射得到的流
+        assertEquals(2_000_001_000_000L, Stream.fromGenerator(1, n -> n + 1).limit(2_000_000).mapToLong(n -> n).sum());
+        assertArrayEquals(new double[]{0.5, 1, 1.5}, Stream.of(1, 2, 3).mapToDouble(n -> n / 2.0).toArray());
+        assertThrows(IllegalStateException.class, () -> IntStream.empty().first());
+    }
+
+    @Test
+    public void testSummaryStatistics() {
+        IntSummaryStatistics stats = IntStream.of(5, -3, 8).summaryStatistics();
+        assertEquals(3, stats.getCount());
+        assertEquals(10, stats.getSum());
+        assertEquals(-3, stats.getMin());
+        assertEquals(8, stats.getMax());
+        assertEquals(0, IntStream.empty().summaryStatistics().getCount());
+        assertEquals(5_000_050_000L, LongStream.range(1, 100_001).summaryStatistics().getSum());
+        assertEquals(2.5, DoubleStream.of(1.5, 3.5).summaryStatistics().getAverage());
+    }
+}
@@ -1,9 +1,26 @@
 package byx.project.stream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -147,6 +164,19 @@ public class StreamTest {
         assertEquals(List.of(1, 3, 5), Stream.fromGenerator(1, n -> n + 2).concat(Stream.fromGenerator(2, n -> n + 2)).limit(3).toList());
         assertTrue(Stream.empty().concat(Stream.empty()).end());
         assertTrue(Stream.empty().concat(Stream.empty()).toList().isEmpty());
+        assertEquals(5, Stream.of(1, 2).concat(Stream.of(3, 4, 5)).exactSize());
+
+        // 遍历完第一个流之前不会计算第二个流
+        AtomicInteger cnt = new AtomicInteger(0);
+        Stream<Integer> s = Stream.of(1, 2).concat(Stream.of(3, 4).map(n -> {
+            cnt.incrementAndGet();
+            return n;
+        }).cache());
+        assertEquals(0, cnt.get());
+        assertEquals(-1, s.exactSize());
+        assertEquals(List.of(1, 2), s.limit(2).toList());
+        assertEquals(0, cnt.get());
+        assertEquals(List.of(1, 2, 3, 4), s.toList());
     }
 
     @Test
@@ -159,6 +189,31 @@ public class StreamTest {
         assertEquals(List.of(1, 2, 3), Stream.of(1, 2, 3).interleave(Stream.empty()).toList());
     }
 
+    @Test
+    public void testZip() {
+        assertEquals(List.of("1a", "2b", "3c"), Stream.of(1, 2, 3).zipWith(Stream.of("a", "b", "c", "d"), (n, c) -> n + c).toList());
+        assertEquals(List.of(Map.entry(1, "a"), Map.entry(2, "b")), Stream.of(1, 2, 3).zip(Stream.of("a", "b")).toList());
+        assertEquals(List.of(11, 22, 33), Stream.fromGenerator(1, n -> n + 1).zipWith(Stream.fromGenerator(10, n -> n + 10), Integer::sum).limit(3).toList());
+        assertTrue(Stream.<Integer>empty().zip(Stream.of(1)).end());
+        assertTrue(Stream.of(1).zip(Stream.empty()).end());
+
+        assertEquals(List.of("0:a", "1:b", "2:c"), Stream.of("a", "b", "c").zipWithIndex((i, e) -> i + ":" + e).toList());
+        assertEquals(List.of(0L, 3L, 6L), Stream.fromGenerator(0L, n -> n + 1).zipWithIndex((i, e) -> i * 2 + e).limit(3).toList());
+        assertEquals(999_999L, Stream.fromGenerator(0, n -> n + 1).limit(1_000_000).zipWithIndex((i, e) -> i).cursor().collect(0L, Math::max));
+        assertTrue(Stream.<String>empty().zipWithIndex((i, e) -> i).end());
+
+        // 调用时不计算元素，每个元素只计算一次
+        AtomicInteger cnt = new AtomicInteger(0);
+        Stream<String> s = Stream.of(1, 2, 3).map(n -> {
+            cnt.incrementAndGet();
+            return n;
+        }).zipWithIndex((i, n) -> i + "-" + n);
+        assertEquals(0, cnt.get());
+        assertEquals(List.of("0-1", "1-2", "2-3"), s.toList());
+        assertEquals(List.of("0-1", "1-2", "2-3"), s.toList());
+        assertEquals(3, cnt.get());
+    }
+
     @Test
     public void testFlatMap() {
         Stream<Integer> s1 = Stream.of(10, 20, 30)
@@ -167,5 +222,1088 @@ public class StreamTest {
         Stream<String> s2 = Stream.of(1, 2, 3)
                 .flatMap(n -> Stream.of(n + "a", n + "b"));
         assertEquals(List.of("1a", "1b", "2a", "2b", "3a", "3b"), s2.toList());
+        assertTrue(Stream.of(1, 2, 3).flatMap(n -> Stream.empty()).end());
+        assertEquals(List.of(2, 4), Stream.of(1, 2, 3, 4).flatMap(n -> n % 2 == 0 ? Stream.of(n) : Stream.empty()).toList());
+
+        AtomicInteger cnt = new AtomicInteger(0);
+        Stream<Integer> s3 = Stream.fromGenerator(1, n -> n + 1)
+                .flatMap(n -> {
+                    cnt.incrementAndGet();
+                    return Stream.of(n, -n);
+                })
+                .limit(5);
+        assertEquals(List.of(1, -1, 2, -2, 3), s3.toList());
+        assertEquals(3, cnt.get());
+        assertEquals(List.of(100_000, 200_000, 300_000), Stream.fromGenerator(1, n -> n + 1)
+                .flatMap(n -> n % 100_000 == 0 ? Stream.of(n) : Stream.empty())
+                .limit(3)
+                .toList());
+        assertEquals(4_000_000, Stream.fromGenerator(0, n -> n + 1)
+                .limit(2_000_000)
+                .flatMap(n -> Stream.of(n, n))
+                .count());
+    }
+
+    @Test
+    public void testMemoized() {
+        AtomicInteger cnt = new AtomicInteger(0);
+        Stream<Integer> s1 = Stream.of(1, 2, 3).map(n -> {
+            cnt.incrementAndGet();
+            return n * 2;
+        });
+        assertTrue(s1.memoized());
+        assertEquals(3, s1.count());
+        assertEquals(List.of(2, 4, 6), s1.toList());
+        assertEquals(2, s1.first());
+        assertEquals(3, cnt.get());
+
+        Stream<Integer> s2 = Stream.fromIterator(List.of(1, 2, 3).iterator());
+        assertEquals(1, s2.first());
+        assertEquals(1, s2.first());
+        assertEquals(List.of(1, 2, 3), s2.toList());
+        assertEquals(List.of(1, 2, 3), s2.toList());
+    }
+
+    @Test
+    public void testUnmemoized() {
+        AtomicInteger cnt = new AtomicInteger(0);
+        Stream<Integer> s = Stream.fromGenerator(1, n -> n + 1)
+                .unmemoized()
+                .map(n -> {
+                    cnt.incrementAndGet();
+                    return n * 2;
+                })
+                .limit(3);
+        assertFalse(s.memoized());
+        assertEquals(List.of(2, 4, 6), s.toList());
+        assertEquals(List.of(2, 4, 6), s.toList());
+        assertEquals(6, cnt.get());
+        assertTrue(Stream.empty().unmemoized().end());
+    }
+
+    @Test
+    public void testLargeStream() {
+        Stream<Integer> s1 = Stream.fromGenerator(1, n -> n + 1)
+                .filter(n -> n % 1_000_000 == 0)
+                .limit(50);
+        assertEquals(50, s1.count());
+        assertEquals(50_000_000, s1.skip(49).first());
+        assertEquals(1_000_000, Stream.fromGenerator(0, n -> n + 1).skip(1_000_000).first());
+        assertEquals(List.of(1, 2), Stream.fromGenerator(1, n -> n + 1).filter(n -> n < 3).limit(2).toList());
+        Stream<Integer> s2 = Stream.fromGenerator(0, n -> n + 1)
+                .limit(500_000)
+                .flatMap(n -> n % 2 == 0 ? Stream.of(n) : Stream.empty());
+        assertEquals(250_000, s2.count());
+    }
+
+    @Test
+    public void testChunk() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(i);
+        }
+        Integer[] arr = list.toArray(new Integer[0]);
+        assertEquals(list, Stream.of(arr).toList());
+        assertEquals(list, Stream.fromIterator(list.iterator()).toList());
+        assertEquals(list, Stream.fromCollection(list).toList());
+        assertEquals(list.subList(100, 1000), Stream.fromArray(100, arr).toList());
+        assertEquals(list.subList(300, 700), Stream.fromIterator(list.iterator()).skip(300).limit(400).toList());
+        assertEquals(500, Stream.fromCollection(list).filter(n -> n % 2 == 0).count());
+        assertEquals(List.of(0, 600, 999), Stream.of(arr).filter(n -> n % 600 == 0 || n == 999).toList());
+        assertEquals(2000, Stream.of(arr).concat(Stream.fromIterator(list.iterator())).count());
+        assertEquals(499_500, Stream.fromIterator(list.iterator()).map(n -> n * 1L).collect(0L, Long::sum));
+        assertEquals(list.subList(998, 1000), Stream.of(arr).map(n -> n).skip(998).toList());
+        assertEquals(List.of(0, 1, 2), Stream.of(arr).unmemoized().limit(3).toList());
+
+        // 映射和读取迭代器都是按需进行的
+        AtomicInteger mapped = new AtomicInteger(0);
+        AtomicInteger read = new AtomicInteger(0);
+        Iterator<Integer> it = list.iterator();
+        Stream<Integer> lazy = Stream.fromIterator(new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                read.incrementAndGet();
+                return it.next();
+            }
+        }).map(n -> {
+            mapped.incrementAndGet();
+            return n;
+        });
+        assertEquals(0, read.get());
+        assertEquals(List.of(0), lazy.limit(1).toList());
+        assertEquals(1, read.get());
+        assertEquals(1, mapped.get());
+        assertEquals(List.of(0, 1, 2, 3, 4), lazy.limit(5).toList());
+        assertTrue(read.get() <= 10);
+        assertEquals(5, mapped.get());
+        assertEquals(list, lazy.toList());
+        assertEquals(1000, mapped.get());
+        mapped.set(0);
+        assertEquals(List.of(500), Stream.of(arr).map(n -> {
+            mapped.incrementAndGet();
+            return n;
+        }).skip(500).limit(1).toList());
+        assertEquals(1, mapped.get());
+    }
+
+    @Test
+    public void testFused() {
+        Integer[] arr = new Integer[1000];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = i;
+        }
+        Stream<String> s1 = Stream.of(arr)
+                .fused()
+                .map(n -> n * 3)
+                .filter(n -> n % 2 == 0)
+                .skip(10)
+                .limit(3)
+                .map(String::valueOf);
+        assertEquals(List.of("60", "66", "72"), s1.toList());
+        assertEquals(3, s1.count());
+        assertEquals("60", s1.first());
+        assertEquals(List.of("66", "72"), s1.remain().toList());
+        assertEquals(Set.of("60", "66", "72"), s1.toSet());
+
+        AtomicInteger cnt = new AtomicInteger(0);
+        Stream<Integer> s2 = Stream.fromGenerator(1, n -> n + 1)
+                .fused()
+                .map(n -> {
+                    cnt.incrementAndGet();
+                    return n * n;
+                })
+                .filter(n -> n % 3 == 0)
+                .limit(4);
+        assertEquals(List.of(9, 36, 81, 144), s2.toList());
+        assertEquals(12, cnt.get());
+
+        AtomicInteger sum = new AtomicInteger(0);
+        Stream.of(1, 2, 3, 4).fused().filter(n -> n > 2).forEach(sum::addAndGet);
+        assertEquals(7, sum.get());
+        assertEquals(0, Stream.of(1, 2, 3).fused().limit(0).count());
+        assertTrue(Stream.empty().fused().map(n -> n).end());
+        assertEquals(List.of(1, 2, 3), Stream.of(1, 2).fused().concat(Stream.of(3)).toList());
+    }
+
+    @Test
+    public void testParallel() {
+        Integer[] arr = new Integer[100_000];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = i;
+        }
+        List<Integer> expected = Stream.of(arr).map(n -> n * 2).filter(n -> n % 3 == 0).toList();
+        assertEquals(expected, Stream.of(arr).parallel().map(n -> n * 2).filter(n -> n % 3 == 0).toList());
+        assertEquals(new HashSet<>(expected), Stream.of(arr).parallel().map(n -> n * 2).filter(n -> n % 3 == 0).toSet());
+        assertEquals(expected.size(), Stream.fromCollection(Arrays.asList(arr)).parallel().map(n -> n * 2).filter(n -> n % 3 == 0).count());
+        assertEquals(4_999_950_000L, Stream.of(arr).parallel().collect(() -> 0L, (sum, n) -> sum + n, Long::sum));
+        assertEquals(4_999_950_000L, Stream.of(arr).fused().collect(() -> 0L, (sum, n) -> sum + n, Long::sum));
+        assertEquals(arr.length, Stream.of(arr).parallel().toMap(n -> n, n -> n).size());
+
+        AtomicLong sum = new AtomicLong(0);
+        Stream.of(arr).parallel().forEach(sum::addAndGet);
+        assertEquals(4_999_950_000L, sum.get());
+
+        assertEquals(List.of(10, 11, 12), Stream.of(arr).parallel().skip(10).limit(3).toList());
+        assertEquals(List.of(0, 2, 4), Stream.fromGenerator(0, n -> n + 1).parallel().map(n -> n * 2).limit(3).toList());
+        assertEquals(List.of(1, 2), Stream.fromIterator(List.of(1, 2).iterator()).parallel().toList());
+    }
+
+    @Test
+    public void testInterop() {
+        List<Integer> list = new ArrayList<>();
+        for (Integer n : Stream.of(1, 2, 3)) {
+            list.add(n);
+        }
+        assertEquals(List.of(1, 2, 3), list);
+
+        Iterator<Integer> it = Stream.fromGenerator(1, n -> n + 1).filter(n -> n % 2 == 0).iterator();
+        assertEquals(2, it.next());
+        assertTrue(it.hasNext());
+        assertTrue(it.hasNext());
+        assertEquals(4, it.next());
+        Iterator<Integer> empty = Stream.<Integer>empty().iterator();
+        assertFalse(empty.hasNext());
+        assertThrows(NoSuchElementException.class, empty::next);
+
+        Spliterator<Integer> sp = Stream.of(1, 2, 3, 4).spliterator();
+        assertTrue(sp.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(4, sp.getExactSizeIfKnown());
+        assertEquals(-1, Stream.fromGenerator(1, n -> n + 1).spliterator().getExactSizeIfKnown());
+
+        assertEquals(List.of("1", "2", "3"), Stream.of(1, 2, 3).asJavaStream().map(String::valueOf).collect(java.util.stream.Collectors.toList()));
+        assertEquals(List.of(4, 6), Stream.fromGenerator(1, n -> n + 1).map(n -> n * 2).asJavaStream().skip(1).limit(2).collect(java.util.stream.Collectors.toList()));
+        Stream<Integer> s = Stream.fromJavaStream(java.util.stream.Stream.of(1, 2, 3));
+        assertEquals(1, s.first());
+        assertEquals(1, s.first());
+        assertEquals(List.of(1, 2, 3), s.toList());
+        assertEquals(List.of(1, 2, 3), s.toList());
+        assertEquals(List.of(0, 1, 2), Stream.fromJavaStream(java.util.stream.Stream.iterate(0, n -> n + 1)).limit(3).toList());
+    }
+
+    @Test
+    public void testShortCircuit() {
+        assertEquals(Optional.of(1), Stream.of(1, 2, 3).findFirst());
+        assertEquals(Optional.empty(), Stream.empty().findFirst());
+        assertEquals(Optional.of(1), Stream.of(1, 2, 3).findAny());
+        assertTrue(Stream.of(1, 2, 3).anyMatch(n -> n == 2));
+        assertFalse(Stream.of(1, 2, 3).anyMatch(n -> n == 4));
+        assertTrue(Stream.of(1, 2, 3).allMatch(n -> n > 0));
+        assertFalse(Stream.of(1, 2, 3).allMatch(n -> n > 1));
+        assertTrue(Stream.of(1, 2, 3).noneMatch(n -> n > 3));
+        assertFalse(Stream.<Integer>empty().anyMatch(n -> true));
+        assertTrue(Stream.<Integer>empty().allMatch(n -> false));
+        assertEquals(6, Stream.of(1, 2, 3).reduce(0, Integer::sum));
+        assertEquals(Optional.of(6), Stream.of(1, 2, 3).reduce(Integer::sum));
+        assertEquals(Optional.empty(), Stream.<Integer>empty().reduce(Integer::sum));
+        assertEquals(Optional.of("a"), Stream.of("bb", "a", "c").min(Comparator.comparing(String::length)));
+        assertEquals(Optional.of("bb"), Stream.of("bb", "a", "cc").max(Comparator.comparing(String::length)));
+
+        // 在无限流上找到结果后立即停止
+        assertTrue(Stream.fromGenerator(0, n -> n + 1).anyMatch(n -> n == 100000));
+        assertFalse(Stream.fromGenerator(0, n -> n + 1).allMatch(n -> n < 100000));
+        assertEquals(Optional.of(100000), Stream.fromGenerator(0, n -> n + 1).filter(n -> n >= 100000).findFirst());
+        assertTrue(Stream.fromGenerator(0, n -> n + 1).fused().map(n -> n * 2).anyMatch(n -> n == 100000));
+        assertEquals(Optional.of(200000), Stream.fromGenerator(0, n -> n + 1).fused().map(n -> n * 2).filter(n -> n >= 200000).findFirst());
+
+        AtomicInteger cnt = new AtomicInteger(0);
+        assertTrue(Stream.of(1, 2, 3, 4, 5).fused().map(n -> {
+            cnt.incrementAndGet();
+            return n;
+        }).anyMatch(n -> n == 2));
+        assertEquals(2, cnt.get());
+
+        Integer[] arr = new Integer[100_000];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = i;
+        }
+        assertTrue(Stream.of(arr).parallel().map(n -> n * 2).anyMatch(n -> n == 150000));
+        assertFalse(Stream.of(arr).parallel().anyMatch(n -> n < 0));
+        assertTrue(Stream.of(arr).parallel().allMatch(n -> n >= 0));
+        assertTrue(Stream.of(arr).parallel().noneMatch(n -> n >= arr.length));
+        assertEquals(Optional.of(0), Stream.of(arr).parallel().findFirst());
+        assertTrue(Stream.of(arr).parallel().filter(n -> n % 1000 == 999).findAny().map(n -> n % 1000 == 999).orElse(false));
+        assertEquals(Optional.empty(), Stream.of(arr).parallel().filter(n -> n < 0).findAny());
+        assertEquals(Optional.of(4_999_950_000L), Stream.of(arr).parallel().map(Long::valueOf).reduce(Long::sum));
+        assertEquals(4_999_950_000L, Stream.of(arr).parallel().map(Long::valueOf).reduce(0L, Long::sum));
+        assertEquals(Optional.of(0), Stream.of(arr).parallel().min(Comparator.naturalOrder()));
+        assertEquals(Optional.of(99999), Stream.of(arr).parallel().max(Comparator.naturalOrder()));
+        assertEquals(Optional.empty(), Stream.of(arr).parallel().filter(n -> n < 0).max(Comparator.naturalOrder()));
+    }
+
+    @Test
+    public void testSize() {
+        Integer[] arr = new Integer[10_000_000];
+        Arrays.fill(arr, 1);
+        Stream<Integer> s = Stream.of(arr);
+        assertEquals(arr.length, s.exactSize());
+        assertTrue((s.characteristics() & Spliterator.SIZED) != 0);
+
+        // map、limit、skip、concat之后仍然知道元素个数
+        AtomicInteger cnt = new AtomicInteger(0);
+        Stream<Integer> mapped = s.map(n -> {
+            cnt.incrementAndGet();
+            return n + 1;
+        });
+        assertEquals(arr.length, mapped.exactSize());
+        assertEquals(arr.length, mapped.count());
+        assertEquals(List.of(2, 2, 2), mapped.skip(5_000_000).limit(3).toList());
+        // 只计算了被访问的元素所在的一批
+        assertTrue(cnt.get() <= ChunkStream.CHUNK_SIZE);
+        assertEquals(5_000_000, mapped.skip(5_000_000).exactSize());
+        assertEquals(100, mapped.skip(5_000_000).limit(100).exactSize());
+        assertEquals(100, s.limit(100).count());
+        assertEquals(arr.length + 3, Stream.concat(s, Stream.of(1, 2, 3)).exactSize());
+        assertEquals(List.of(1, 2, 3), Stream.concat(s, Stream.of(1, 2, 3)).skip(arr.length).toList());
+        assertEquals(List.of(1, 1), Stream.concat(s, Stream.of(1, 2, 3)).skip(arr.length - 2).limit(2).toList());
+        assertEquals(0, s.skip(arr.length).count());
+        assertEquals(-1, s.filter(n -> n > 0).exactSize());
+        assertEquals(arr.length, s.fused().map(n -> n + 1).count());
+        assertEquals(-1, s.fused().filter(n -> n > 0).exactSize());
+
+        assertEquals(3, Stream.of(1, 2, 3, 4, 5).map(n -> n * 2).skip(2).count());
+        assertEquals(List.of(6, 8, 10), Stream.of(1, 2, 3, 4, 5).map(n -> n * 2).skip(2).toList());
+        assertEquals(-1, Stream.fromGenerator(0, n -> n + 1).exactSize());
+        assertEquals(Long.MAX_VALUE, Stream.fromIterator(List.of(1, 2).iterator()).estimateSize());
+        assertEquals(0, Stream.empty().exactSize());
+
+        // 保留集合的特征值
+        assertTrue((Stream.fromCollection(new TreeSet<>(List.of(3, 1, 2))).characteristics() & Spliterator.SORTED) != 0);
+        assertTrue((Stream.fromCollection(new HashSet<>(List.of(3, 1, 2))).characteristics() & Spliterator.DISTINCT) != 0);
+        assertEquals(0, Stream.fromCollection(new HashSet<>(List.of(3, 1, 2))).map(n -> n).characteristics() & Spliterator.DISTINCT);
+        assertEquals(3, Stream.fromCollection(List.of(1, 2, 3)).spliterator().getExactSizeIfKnown());
+        assertEquals(4, Stream.of(1, 2, 3, 4, 5).map(n -> n).skip(1).spliterator().getExactSizeIfKnown());
+    }
+
+    @Test
+    public void testPrefetch() throws InterruptedException {
+        Integer[] arr = new Integer[1000];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = i;
+        }
+        assertEquals(Arrays.asList(arr), Stream.of(arr).prefetch(16).toList());
+        assertEquals(Arrays.asList(1, null, 3), Stream.of(1, null, 3).prefetch(1).toList());
+        assertTrue(Stream.empty().prefetch(4).end());
+
+        // 源流在其他线程中计算
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        Stream<Integer> s = Stream.of(arr).unmemoized().map(n -> {
+            threads.add(Thread.currentThread());
+            return n;
+        }).prefetch(8);
+        assertEquals(499_500, s.collect(0, Integer::sum));
+        assertFalse(threads.contains(Thread.currentThread()));
+
+        // 异常在消费者线程中重新抛出
+        Stream<Integer> failed = Stream.fromGenerator(0, n -> {
+            if (n == 5) {
+                throw new IllegalArgumentException("boom");
+            }
+            return n + 1;
+        }).prefetch(4);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), failed.limit(6).toList());
+        assertThrows(IllegalArgumentException.class, failed::count);
+
+        // 调用时不等待第一个元素
+        CountDownLatch ready = new CountDownLatch(1);
+        Stream<Integer> slow = Stream.fromSupplier(() -> {
+            try {
+                if (!ready.await(10, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("prefetch等待了第一个元素");
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return 1;
+        }).limit(3).prefetch(2);
+        // 在此基础上调用map、filter、limit、skip也不等待第一个元素
+        Stream<Integer> chained = slow.map(n -> n * 2).filter(n -> n > 0).skip(1).limit(5);
+        ready.countDown();
+        assertEquals(List.of(2, 2), chained.toList());
+        assertEquals(List.of(1, 1, 1), slow.toList());
+
+        // 提前结束时关闭流会停止后台线程
+        AtomicInteger produced = new AtomicInteger(0);
+        Thread[] producer = new Thread[1];
+        Stream<Integer> p = Stream.fromGenerator(0, n -> {
+            producer[0] = Thread.currentThread();
+            produced.incrementAndGet();
+            return n + 1;
+        }).prefetch(4);
+        assertEquals(List.of(0, 1, 2), p.limit(3).toList());
+        p.close();
+        producer[0].join(10_000);
+        assertFalse(producer[0].isAlive());
+        assertTrue(produced.get() <= 3 + 4 + 1);
+        assertEquals(List.of(0, 1, 2), p.limit(3).toList());
+        assertThrows(IllegalStateException.class, p::count);
+
+        // 关闭在此基础上调用map得到的流同样会停止后台线程
+        Thread[] mappedProducer = new Thread[1];
+        Stream<Integer> mapped = Stream.fromGenerator(0, n -> {
+            mappedProducer[0] = Thread.currentThread();
+            return n + 1;
+        }).prefetch(4).map(n -> n * 2);
+        assertEquals(List.of(0, 2), mapped.limit(2).toList());
+        mapped.close();
+        mappedProducer[0].join(10_000);
+        assertFalse(mappedProducer[0].isAlive());
+
+        // 关闭游标同样会停止后台线程
+        Thread[] cursorProducer = new Thread[1];
+        try (Cursor<Integer> c = Stream.fromGenerator(0, n -> {
+            cursorProducer[0] = Thread.currentThread();
+            return n + 1;
+        }).prefetch(4).cursor()) {
+            assertEquals(0, c.next());
+            assertEquals(1, c.next());
+        }
+        cursorProducer[0].join(10_000);
+        assertFalse(cursorProducer[0].isAlive());
+    }
+
+    @Test
+    public void testMapAsync() {
+        Integer[] arr = new Integer[200];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = i;
+        }
+        List<Integer> expected = Stream.of(arr).map(n -> n * 2).toList();
+
+        // 后完成的元素排在前面时，有序模式仍然按源流的顺序返回
+        assertEquals(expected, Stream.of(arr).mapAsync(8, n -> CompletableFuture.supplyAsync(() -> {
+            sleep((arr.length - n) % 3);
+            return n * 2;
+        })).toList());
+        assertEquals(expected, Stream.of(arr).mapParallel(8, n -> {
+            sleep(n % 3);
+            return n * 2;
+        }).toList());
+        assertEquals(new HashSet<>(expected), Stream.of(arr).mapAsyncUnordered(8, n -> CompletableFuture.supplyAsync(() -> n * 2)).toSet());
+        assertEquals(new HashSet<>(expected), Stream.of(arr).mapParallelUnordered(8, n -> n * 2).toSet());
+        assertTrue(Stream.<Integer>empty().mapParallel(4, n -> n).end());
+
+        // 无序模式按完成的顺序返回
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        Stream<String> s = Stream.of(slow, CompletableFuture.completedFuture("fast")).mapAsyncUnordered(2, f -> f);
+        assertEquals("fast", s.first());
+        slow.complete("slow");
+        assertEquals(List.of("fast", "slow"), s.toList());
+
+        // 同时进行的映射不超过parallelism个
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxRunning = new AtomicInteger(0);
+        Stream.of(arr).mapParallel(4, n -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(1);
+            running.decrementAndGet();
+            return n;
+        }).forEach(n -> {});
+        assertTrue(maxRunning.get() <= 4);
+
+        // 下游提前结束时不会映射所有元素
+        AtomicInteger mapped = new AtomicInteger(0);
+        assertEquals(List.of(0, 1, 2), Stream.fromGenerator(0, n -> n + 1).mapParallel(4, n -> {
+            mapped.incrementAndGet();
+            return n;
+        }).limit(3).toList());
+        assertTrue(mapped.get() <= 3 + 4);
+
+        // 第一次访问时才启动映射
+        AtomicInteger started = new AtomicInteger(0);
+        Stream<Integer> deferred = Stream.of(1, 2, 3).mapParallel(2, n -> {
+            started.incrementAndGet();
+            return n;
+        });
+        assertEquals(0, started.get());
+        assertEquals(List.of(1, 2, 3), deferred.toList());
+        assertEquals(3, started.get());
+
+        // 关闭流时取消进行中的映射
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        Stream<Integer> pending = Stream.of(0, 1, 2, 3, 4).mapAsync(3, n -> {
+            CompletableFuture<Integer> f = n == 0 ? CompletableFuture.completedFuture(0) : new CompletableFuture<>();
+            futures.add(f);
+            return f;
+        });
+        assertEquals(0, pending.first());
+        assertEquals(3, futures.size());
+        pending.close();
+        assertTrue(futures.get(1).isCancelled());
+        assertTrue(futures.get(2).isCancelled());
+        assertThrows(IllegalStateException.class, () -> pending.skip(1).first());
+        assertEquals(3, futures.size());
+
+        // 关闭游标同样会取消映射
+        List<CompletableFuture<Integer>> cursorFutures = new ArrayList<>();
+        try (Cursor<Integer> c = Stream.fromGenerator(0, n -> n + 1).mapAsyncUnordered(2, n -> {
+            CompletableFuture<Integer> f = n == 0 ? CompletableFuture.completedFuture(0) : new CompletableFuture<>();
+            cursorFutures.add(f);
+            return f;
+        }).cursor()) {
+            assertEquals(0, c.next());
+        }
+        assertEquals(2, cursorFutures.size());
+        assertTrue(cursorFutures.get(1).isCancelled());
+
+        // 异常在消费者线程中重新抛出
+        assertThrows(IllegalArgumentException.class, () -> Stream.of(1, 2, 3).mapParallel(2, n -> {
+            if (n == 2) {
+                throw new IllegalArgumentException("boom");
+            }
+            return n;
+        }).toList());
+        assertThrows(IllegalArgumentException.class, () -> Stream.of(1).mapParallel(0, n -> n));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testFile(@TempDir Path dir) throws IOException {
+        Path text = dir.resolve("text.txt");
+        Files.writeString(text, "hello\r\nworld\n\n你好\nlast");
+        assertEquals(List.of("hello", "world", "", "你好", "last"), Stream.lines(text).toList());
+        assertEquals(5, Stream.lines(text).count());
+        assertEquals("hello", Stream.lines(text).first());
+        assertEquals(List.of("hello", "world"), Stream.lines(text).limit(2).toList());
+        assertEquals(List.of("HELLO", "WORLD"), Stream.lines(text).fused().map(String::toUpperCase).limit(2).toList());
+        assertEquals(List.of("hello", "world", "", "last"),
+                Stream.lineViews(text).filter(line -> line.length() != 6).map(CharSequence::toString).toList());
+        assertEquals('w', Stream.lineViews(text).remain().first().charAt(0));
+        assertThrows(IllegalArgumentException.class, () -> Stream.lines(text, StandardCharsets.UTF_16));
+        assertThrows(UncheckedIOException.class, () -> Stream.lines(dir.resolve("missing.txt")));
+
+        Path empty = dir.resolve("empty.txt");
+        Files.writeString(empty, "");
+        assertTrue(Stream.lines(empty).end());
+        assertEquals(0, Stream.lines(empty).parallel().count());
+
+        // 行跨越映射区域的边界
+        StringBuilder sb = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            String line = "line-" + i;
+            expected.add(line);
+            sb.append(line).append('\n');
+        }
+        Path big = dir.resolve("big.txt");
+        Files.writeString(big, sb);
+        MappedFile file = new MappedFile(big, 100);
+        Stream<String> lines = new SpliteratorStream<>(() -> file.lines(b -> StandardCharsets.UTF_8.decode(b).toString()));
+        assertEquals(expected, lines.toList());
+        assertEquals(expected, lines.parallel().toList());
+        assertEquals(expected.size(), lines.parallel().filter(line -> line.startsWith("line")).count());
+        assertEquals(expected.size(), Stream.lines(big).parallel().map(String::length).count());
+        assertEquals(expected, Stream.lines(big).parallel().toList());
+        assertThrows(IllegalStateException.class, () -> new SpliteratorStream<>(() -> new MappedFile(big, 4).lines(b -> b)).count());
+
+        // 固定长度的记录
+        Path bin = dir.resolve("records.bin");
+        ByteBuffer buf = ByteBuffer.allocate(10_000 * 8 + 3);
+        for (int i = 0; i < 10_000; i++) {
+            buf.putLong(i);
+        }
+        Files.write(bin, buf.array());
+        assertEquals(10_000, Stream.records(bin, 8).count());
+        assertEquals(10_000, Stream.records(bin, 8).exactSize());
+        assertEquals(49_995_000L, Stream.records(bin, 8).map(b -> b.getLong(0)).collect(0L, Long::sum));
+        assertEquals(49_995_000L, Stream.records(bin, 8).parallel().map(b -> b.getLong(0)).reduce(0L, Long::sum));
+        assertTrue(Stream.records(bin, 8).first().isReadOnly());
+        MappedFile records = new MappedFile(bin, 100);
+        assertEquals(LongStream.range(0, 10_000).boxed().toList(),
+                new SpliteratorStream<>(() -> records.records(8)).parallel().map(b -> b.getLong(0)).toList());
+        assertThrows(IllegalArgumentException.class, () -> Stream.records(bin, 0));
+
+        // 查询特征值和元素个数时不会重复创建Spliterator，元素个数超过int的范围时不会被截断
+        AtomicInteger created = new AtomicInteger(0);
+        Stream<Integer> huge = new SpliteratorStream<>(() -> {
+            created.incrementAndGet();
+            return Spliterators.spliterator(Collections.<Integer>emptyIterator(), 3L << 31, Spliterator.ORDERED);
+        });
+        assertEquals(3L << 31, huge.exactSize());
+        assertEquals(3L << 31, huge.estimateSize());
+        assertTrue((huge.characteristics() & Spliterator.SIZED) != 0);
+        assertThrows(ArithmeticException.class, huge::count);
+        assertThrows(ArithmeticException.class, () -> huge.fused().count());
+        assertThrows(ArithmeticException.class, () -> huge.parallel().map(n -> n).count());
+        assertEquals(1, created.get());
+        Stream<Integer> hugeChunk = ChunkStream.create(new Object[]{1}, 0, 1, Stream::empty, 3L << 31, 0);
+        assertThrows(ArithmeticException.class, hugeChunk::count);
+        assertThrows(ArithmeticException.class, () -> Stream.of(1).concat(hugeChunk).count());
+    }
+
+    @Test
+    public void testSorted() {
+        assertEquals(List.of(1, 2, 3, 4, 5), Stream.of(3, 1, 5, 2, 4).sorted(null).toList());
+        assertEquals(List.of(5, 4, 3, 2, 1), Stream.of(3, 1, 5, 2, 4).sorted(Comparator.reverseOrder()).toList());
+        assertTrue(Stream.<Integer>empty().sorted(null).end());
+        assertEquals(5, Stream.of(3, 1, 5, 2, 4).sorted(null).exactSize());
+
+        Random random = new Random(42);
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            list.add(random.nextInt(1000));
+        }
+        List<Integer> expected = new ArrayList<>(list);
+        Collections.sort(expected);
+        assertEquals(expected, Stream.fromCollection(list).sorted(null).toList());
+        assertEquals(expected, Stream.fromIterator(list.iterator()).sorted(null, 100).toList());
+        assertEquals(expected, Stream.fromCollection(list).sorted(Integer::compare, 777).toList());
+        assertEquals(expected.subList(0, 10), Stream.fromCollection(list).sorted(null, 1000).limit(10).toList());
+
+        // 相等的元素保持原来的顺序
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            words.add((char) ('a' + random.nextInt(5)) + String.valueOf(i));
+        }
+        List<String> stable = new ArrayList<>(words);
+        stable.sort(Comparator.comparing(w -> w.charAt(0)));
+        assertEquals(stable, Stream.fromCollection(words).sorted(Comparator.comparing(w -> w.charAt(0))).toList());
+        assertEquals(stable, Stream.fromCollection(words).sorted(Comparator.comparing(w -> w.charAt(0)), 64).toList());
+
+        // 只访问前k个元素时不会对所有元素排序
+        AtomicLong comparisons = new AtomicLong();
+        Comparator<Integer> counting = (a, b) -> {
+            comparisons.incrementAndGet();
+            return Integer.compare(a, b);
+        };
+        List<Integer> large = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            large.add(random.nextInt());
+        }
+        Stream<Integer> top = Stream.fromCollection(large).sorted(counting.reversed());
+        List<Integer> top10 = top.limit(10).toList();
+        assertTrue(comparisons.get() < 3 * large.size());
+        large.sort(Comparator.reverseOrder());
+        assertEquals(large.subList(0, 10), top10);
+        assertEquals(large.size(), top.count());
+        assertEquals(large, top.cursor().collect(new ArrayList<>(), (l, e) -> {
+            l.add(e);
+            return l;
+        }));
+        assertEquals(large, top.toList());
+
+        // 段数超过MAX_FAN_IN时逐轮归并，同时打开的临时文件个数不超过上限
+        List<Integer> many = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            many.add(random.nextInt(100));
+        }
+        List<Integer> manySorted = new ArrayList<>(many);
+        Collections.sort(manySorted);
+        long before = countSpillFiles("stream-sort-");
+        Stream<Integer> merged = Stream.fromCollection(many).sorted(null, 1);
+        // 调用时不读取源流，也不写入临时文件
+        assertEquals(before, countSpillFiles("stream-sort-"));
+        assertFalse(merged.end());
+        assertTrue(countSpillFiles("stream-sort-") - before < ExternalSorter.MAX_FAN_IN);
+        assertEquals(manySorted, merged.toList());
+        assertTrue(countSpillFiles("stream-sort-") <= before);
+        assertEquals(stable, Stream.fromCollection(words).sorted(Comparator.comparing(w -> w.charAt(0)), 3).toList());
+
+        assertThrows(IllegalArgumentException.class, () -> Stream.of(1).sorted(null, 0));
+        assertThrows(UncheckedIOException.class, () -> Stream.of(new Object(), new Object()).sorted((a, b) -> 0, 1).toList());
+    }
+
+    @Test
+    public void testSortedSpillMemory() throws Exception {
+        // 在堆大小受限的子进程中对300万个元素进行外部排序
+        assertEquals("3000000", runWithSmallHeap(SortMain.class, "-Xmx64m"));
+    }
+
+    public static class SortMain {
+        public static void main(String[] args) {
+            Stream<Integer> sorted = Stream.fromGenerator(0, n -> n + 1).map(n -> 2_999_999 - n).limit(3_000_000)
+                    .sorted(Comparator.naturalOrder(), 10_000);
+            System.out.println(sorted.cursor().count());
+        }
+    }
+
+    private static long countSpillFiles(String prefix) {
+        try (java.util.stream.Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix)).count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void testWindow() {
+        assertEquals(List.of(List.of(1, 2, 3), List.of(2, 3, 4), List.of(3, 4, 5)), Stream.of(1, 2, 3, 4, 5).window(3, 1).toList());
+        assertEquals(List.of(List.of(1, 2), List.of(3, 4)), Stream.of(1, 2, 3, 4, 5).window(2, 2).toList());
+        assertEquals(List.of(List.of(1, 2), List.of(5, 6)), Stream.of(1, 2, 3, 4, 5, 6, 7).window(2, 4).toList());
+        assertTrue(Stream.of(1, 2).window(3, 1).end());
+        assertThrows(IllegalArgumentException.class, () -> Stream.of(1).window(1, 0));
+        assertThrows(UnsupportedOperationException.class, () -> Stream.of(1, 2).window(2, 1).first().set(0, 3));
+
+        // 窗口在缓冲区切换之后仍然有效，无限流上的窗口按需计算
+        List<List<Integer>> windows = Stream.fromGenerator(0, n -> n + 1).window(5, 3).limit(1000).toList();
+        for (int i = 0; i < windows.size(); i++) {
+            assertEquals(List.of(3 * i, 3 * i + 1, 3 * i + 2, 3 * i + 3, 3 * i + 4), windows.get(i));
+        }
+
+        assertEquals(List.of(6, 9, 12), Stream.of(1, 2, 3, 4, 5).slidingAggregate(3, 0, Integer::sum).toList());
+        assertEquals(List.of("abc", "bcd"), Stream.of("a", "b", "c", "d").slidingAggregate(3, "", String::concat).toList());
+        assertTrue(Stream.of(1, 2).slidingAggregate(3, 0, Integer::sum).end());
+        assertEquals(List.of(0, 1, 2), Stream.fromGenerator(0, n -> n + 1).slidingAggregate(1, 0, Integer::sum).limit(3).toList());
+        Stream<Integer> s = Stream.fromGenerator(1, n -> n * 7 % 10007).limit(5099);
+        assertEquals(s.window(100, 1).map(Collections::max).toList(), s.slidingAggregate(100, Integer.MIN_VALUE, Math::max).toList());
+
+        // 调用时不读取源流，第一次访问时才读取第一个窗口的元素
+        AtomicInteger read = new AtomicInteger();
+        Stream<Integer> counted = Stream.fromGenerator(0, n -> n + 1).map(n -> {
+            read.incrementAndGet();
+            return n;
+        });
+        Stream<List<Integer>> lazyWindows = counted.window(3, 1);
+        Stream<Integer> lazySums = counted.slidingAggregate(3, 0, Integer::sum);
+        assertEquals(0, read.get());
+        assertEquals(List.of(0, 1, 2), lazyWindows.first());
+        assertEquals(3, lazySums.first());
+    }
+
+    @Test
+    public void testSummarize() {
+        assertEquals(List.of(1, 2, 3), Stream.of(1, 2, 3).collect(Collectors.toList()));
+        assertEquals("1,2,3", Stream.of(1, 2, 3).map(String::valueOf).collect(Collectors.joining(",")));
+        assertEquals(4950, Stream.fromGenerator(0, n -> n + 1).limit(100).parallel().collect(Collectors.summingInt(n -> n)));
+
+        // 上游的map只执行一次
+        AtomicInteger calls = new AtomicInteger();
+        Stream<Integer> s = Stream.fromGenerator(1, n -> n + 1).limit(1000).unmemoized().map(n -> {
+            calls.incrementAndGet();
+            return n;
+        });
+        Collector<Integer, ?, Long> count = Collectors.counting();
+        Collector<Integer, ?, Integer> sum = Collectors.summingInt(n -> n);
+        Collector<Integer, ?, Optional<Integer>> max = Collectors.maxBy(Comparator.naturalOrder());
+        Collector<Integer, ?, List<Integer>> evens = Collectors.filtering(n -> n % 100 == 0, Collectors.toList());
+        Summary summary = s.summarize(List.of(count, sum, max, evens));
+        assertEquals(1000, calls.get());
+        assertEquals(1000L, summary.get(count));
+        assertEquals(500500, summary.get(sum));
+        assertEquals(Optional.of(1000), summary.get(max));
+        assertEquals(List.of(100, 200, 300, 400, 500, 600, 700, 800, 900, 1000), summary.get(evens));
+        assertThrows(IllegalArgumentException.class, () -> summary.get(Collectors.counting()));
+
+        Summary parallel = Stream.fromCollection(s.toList()).parallel().summarize(List.of(count, evens));
+        assertEquals(1000L, parallel.get(count));
+        assertEquals(summary.get(evens), parallel.get(evens));
+
+        IntSummaryStatistics stats = Stream.of("a", "bb", "ccc").summarizeInt(String::length);
+        assertEquals(3, stats.getCount());
+        assertEquals(6, stats.getSum());
+        assertEquals(1, stats.getMin());
+        assertEquals(3, stats.getMax());
+        assertEquals(2.0, stats.getAverage());
+        assertEquals(6, Stream.of("a", "bb", "ccc").summarizeLong(String::length).getSum());
+        assertEquals(0, Stream.<String>empty().summarizeDouble(String::length).getCount());
+    }
+
+    @Test
+    public void testCache() {
+        AtomicInteger calls = new AtomicInteger();
+        Stream<Integer> source = Stream.fromGenerator(0, n -> n + 1).limit(10_000).unmemoized().map(n -> {
+            calls.incrementAndGet();
+            return n * 2;
+        });
+        List<Integer> expected = source.toList();
+        calls.set(0);
+
+        // 多个消费者共享同一份计算结果
+        Stream<Integer> cached = source.cache();
+        // 调用时不读取源流，第一次访问时才读取第一段
+        assertEquals(0, calls.get());
+        assertEquals(0, cached.first());
+        assertEquals(ChunkStream.CHUNK_SIZE, calls.get());
+        assertEquals(expected, cached.toList());
+        assertEquals(expected, cached.cursor().collect(new ArrayList<>(), (l, e) -> {
+            l.add(e);
+            return l;
+        }));
+        assertEquals(expected.subList(5000, 10_000), cached.skip(5000).toList());
+        assertEquals(10_000, cached.count());
+        assertEquals(10_000, calls.get());
+        assertTrue(Stream.empty().cache().end());
+
+        List<Integer> list = List.of(1, 2, 3, 4, 5);
+        Stream<Integer> fromIterator = Stream.fromIterator(list.iterator()).unmemoized().cache();
+        assertEquals(list, fromIterator.toList());
+        assertEquals(list, fromIterator.toList());
+
+        // 有界缓存淘汰的段会被重新计算
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            calls.set(0);
+            Stream<Integer> bounded = source.cache(1000, policy);
+            assertEquals(expected, bounded.toList());
+            assertEquals(10_000, calls.get());
+            assertEquals(expected.subList(0, 300), bounded.limit(300).toList());
+            assertEquals(expected, bounded.toList());
+            assertTrue(calls.get() > 10_000);
+        }
+
+        // LRU缓存保留经常访问的段
+        calls.set(0);
+        Stream<Integer> lru = source.cache(600, EvictionPolicy.LRU);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, lru.first());
+            assertEquals(expected.get(256 * i), lru.skip(256 * i).first());
+        }
+        assertEquals(256 * 10, calls.get());
+
+        // 由迭代器或工厂方法生成的源流不能重新计算，被淘汰的段读取源流共享的元素
+        List<Integer> numbers = Stream.fromGenerator(0, n -> n + 1).limit(2000).toList();
+        Stream<Integer> iterated = Stream.fromIterator(numbers.iterator()).cache(300, EvictionPolicy.FIFO);
+        assertEquals(2000, iterated.count());
+        assertEquals(numbers, iterated.toList());
+        assertEquals(numbers.subList(1000, 2000), iterated.skip(1000).toList());
+        AtomicInteger counter = new AtomicInteger();
+        Stream<Integer> supplied = Stream.fromSupplier(counter::getAndIncrement).limit(1000).cache(300, EvictionPolicy.LRU);
+        assertEquals(499500, supplied.reduce(0, Integer::sum));
+        assertEquals(499500, supplied.reduce(0, Integer::sum));
+        assertEquals(1000, counter.get());
+
+        Stream<String> words = Stream.of("aaaa", "bb", "cccccc").cache(1L << 20, String::length, EvictionPolicy.FIFO);
+        assertEquals(List.of("aaaa", "bb", "cccccc"), words.toList());
+        assertThrows(IllegalArgumentException.class, () -> source.cache(0, EvictionPolicy.LRU));
+    }
+
+    @Test
+    public void testBroadcast() {
+        AtomicInteger calls = new AtomicInteger();
+        Stream<Integer> source = Stream.fromGenerator(1, n -> n + 1).limit(100_000).unmemoized().map(n -> {
+            calls.incrementAndGet();
+            return n;
+        });
+        List<Function<Stream<Integer>, Object>> pipelines = List.of(
+                Stream::count,
+                s -> s.collect(0L, (a, b) -> a + b),
+                s -> s.max(Comparator.naturalOrder()).orElseThrow(),
+                s -> s.filter(n -> n % 1000 == 0).count(),
+                Stream::first,
+                s -> s.map(n -> n * 2).limit(3).toList()
+        );
+        List<Object> results = source.broadcast(16, pipelines);
+        assertEquals(List.of(100_000, 5_000_050_000L, 100_000, 100, 1, List.of(2, 4, 6)), results);
+        assertEquals(100_000, calls.get());
+
+        // 一个分支在源流中等待时，其他分支仍然可以读取缓冲区中的元素
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean released = new AtomicBoolean();
+        Stream<Integer> blocking = Stream.fromGenerator(1, n -> n + 1).limit(20).unmemoized().map(n -> {
+            if (n == 10) {
+                try {
+                    released.set(latch.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return n;
+        });
+        assertEquals(List.of(20, 28), blocking.broadcast(16, List.<Function<Stream<Integer>, Object>>of(
+                Stream::count,
+                s -> s.limit(7).collect(0, (a, n) -> {
+                    if (n == 7) {
+                        latch.countDown();
+                    }
+                    return a + n;
+                }))));
+        assertTrue(released.get());
+
+        assertEquals(List.of(0, 0), Stream.<Integer>empty().broadcast(4, List.of(Stream::count, Stream::count)));
+        assertThrows(IllegalArgumentException.class, () -> source.broadcast(0, pipelines));
+
+        // 源流和处理函数中的异常
+        Stream<Integer> failing = Stream.fromGenerator(1, n -> {
+            if (n == 500) {
+                throw new IllegalStateException("failed");
+            }
+            return n + 1;
+        });
+        assertThrows(IllegalStateException.class, () -> failing.broadcast(8, List.of(Stream::count, Stream::count)));
+        assertThrows(ArithmeticException.class, () -> source.broadcast(8, List.<Function<Stream<Integer>, Object>>of(
+                Stream::count,
+                s -> s.map(n -> n / (n - 5000)).toList())));
+
+        // 等待所有处理函数结束后才抛出异常，其他处理函数的异常作为被抑制的异常
+        AtomicBoolean finished = new AtomicBoolean();
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> source.broadcast(8, List.<Function<Stream<Integer>, Object>>of(
+                s -> {
+                    throw new IllegalStateException("first");
+                },
+                s -> {
+                    int n = s.count();
+                    finished.set(true);
+                    return n;
+                },
+                s -> {
+                    throw new IllegalArgumentException("second");
+                })));
+        assertEquals("first", e.getMessage());
+        assertTrue(finished.get());
+        assertEquals(1, e.getSuppressed().length);
+        assertInstanceOf(IllegalArgumentException.class, e.getSuppressed()[0]);
+    }
+
+    @Test
+    public void testBroadcastConstantMemory() throws Exception {
+        // 在堆大小受限的子进程中把2000万个元素分发给两个处理函数
+        assertEquals("20000000 199999990000000", runWithSmallHeap(BroadcastMain.class, "-Xmx64m"));
+    }
+
+    public static class BroadcastMain {
+        public static void main(String[] args) {
+            List<Object> results = Stream.fromGenerator(0L, n -> n + 1).limit(20_000_000).broadcast(1024, List.<Function<Stream<Long>, Object>>of(
+                    Stream::count,
+                    s -> s.collect(Collectors.summingLong(n -> n))));
+            System.out.println(results.get(0) + " " + results.get(1));
+        }
+    }
+
+    @Test
+    public void testGroupBy() {
+        Stream<String> words = Stream.of("apple", "avocado", "banana", "blueberry", "cherry", "apricot");
+        assertEquals(Map.of('a', List.of("apple", "avocado", "apricot"), 'b', List.of("banana", "blueberry"), 'c', List.of("cherry")),
+                words.groupBy(w -> w.charAt(0), Collectors.toList()));
+        assertEquals(Map.of('a', 3L, 'b', 2L, 'c', 1L), words.countBy(w -> w.charAt(0)));
+        assertEquals(Map.of(5, "apple", 7, "avocado,apricot", 6, "banana,cherry", 9, "blueberry"),
+                words.groupBy(String::length, Collectors.joining(",")));
+        assertEquals(Map.of(true, List.of("banana", "blueberry"), false, List.of("apple", "avocado", "cherry", "apricot")),
+                words.partitionBy(w -> w.startsWith("b")));
+        assertEquals(Map.of(true, List.of(), false, List.of()), Stream.<String>empty().partitionBy(w -> true));
+
+        IntHashMap<Long> byMod = Stream.fromGenerator(0, n -> n + 1).limit(10_000).groupByInt(n -> n % 7, Collectors.counting());
+        assertEquals(7, byMod.size());
+        assertEquals(1429L, byMod.get(0));
+        assertEquals(1428L, byMod.get(6));
+        LongHashMap<List<Long>> byId = Stream.of(3L, 1L << 40, 3L).groupByLong(n -> n, Collectors.toList());
+        assertEquals(List.of(3L, 3L), byId.get(3));
+        assertEquals(List.of(1L << 40), byId.get(1L << 40));
+
+        // 并行分组与顺序分组的结果相同
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            list.add(i);
+        }
+        Stream<Integer> s = Stream.fromCollection(list);
+        assertEquals(s.groupBy(n -> n % 100, Collectors.summingInt(n -> n)), s.parallel().groupBy(n -> n % 100, Collectors.summingInt(n -> n)));
+        assertEquals(s.groupByInt(n -> n % 100, Collectors.toList()), s.parallel().groupByInt(n -> n % 100, Collectors.toList()));
+        assertEquals(Grouping.MAX_PRESIZE, Grouping.expectedGroups(s));
+        assertEquals(10, Grouping.expectedGroups(Stream.fromCollection(list.subList(0, 10))));
+        assertEquals(-1, Grouping.expectedGroups(Stream.fromGenerator(0, n -> n + 1)));
+        // 并行执行时每个部分都会创建哈希表，不预先分配空间
+        assertEquals(-1, Grouping.expectedGroups(s.parallel()));
+    }
+
+    @Test
+    public void testJoin() {
+        Stream<String> users = Stream.of("1:alice", "2:bob", "3:carol");
+        Stream<String> orders = Stream.of("1:book", "3:pen", "1:cup", "4:bag");
+        Function<String, String> id = s -> s.split(":")[0];
+        Function<String, String> value = s -> s.split(":")[1];
+        // 当前流较少时以当前流为构建侧，结果按other的顺序排列
+        assertEquals(List.of("alice-book", "carol-pen", "alice-cup"),
+                users.hashJoin(orders, id, id, (u, o) -> value.apply(u) + "-" + value.apply(o)).toList());
+        assertEquals(List.of("book-alice", "pen-carol", "cup-alice"),
+                orders.hashJoin(users, id, id, (o, u) -> value.apply(o) + "-" + value.apply(u)).toList());
+        assertEquals(List.of("book-alice", "pen-carol", "cup-alice"),
+                Stream.fromIterator(List.of("1:book", "3:pen", "1:cup", "4:bag").iterator())
+                        .hashJoin(users, id, id, (o, u) -> value.apply(o) + "-" + value.apply(u)).toList());
+        assertTrue(users.hashJoin(Stream.<String>empty(), id, id, (u, o) -> u).end());
+
+        assertEquals(List.of("1:alice", "3:carol"), users.semiJoin(orders, id, id).toList());
+        assertEquals(List.of("2:bob"), users.antiJoin(orders, id, id).toList());
+        assertEquals(List.of("4:bag"), orders.antiJoin(users, id, id).toList());
+
+        // 归并连接
+        Stream<Integer> left = Stream.of(1, 2, 2, 3, 5, 7);
+        Stream<Integer> right = Stream.of(2, 2, 3, 4, 5, 5, 6);
+        assertEquals(List.of("2-2", "2-2", "2-2", "2-2", "3-3", "5-5", "5-5"),
+                left.mergeJoin(right, n -> n, n -> n, Integer::compare, (a, b) -> a + "-" + b).toList());
+        assertTrue(left.mergeJoin(Stream.<Integer>empty(), n -> n, n -> n, Integer::compare, (a, b) -> a).end());
+
+        // 超过内存上限时分区写入临时文件，结果与内存中的连接相同
+        Random random = new Random(42);
+        List<Integer> a = new ArrayList<>();
+        List<Integer> b = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            a.add(random.nextInt(2000));
+            b.add(random.nextInt(2000));
+        }
+        List<String> expected = Stream.fromCollection(a).hashJoin(Stream.fromCollection(b), n -> n, n -> n, (x, y) -> x + "-" + y).toList();
+        List<String> spilled = Stream.fromCollection(a).hashJoin(Stream.fromCollection(b), n -> n, n -> n, (x, y) -> x + "-" + y, 100).toList();
+        List<String> unsized = Stream.fromIterator(a.iterator()).hashJoin(Stream.fromIterator(b.iterator()), n -> n, n -> n, (x, y) -> x + "-" + y, 100).toList();
+        assertEquals(new HashSet<>(expected), new HashSet<>(spilled));
+        assertEquals(expected.size(), spilled.size());
+        Collections.sort(expected);
+        Collections.sort(unsized);
+        assertEquals(expected, unsized);
+        Collections.sort(a);
+        Collections.sort(b);
+        List<String> merged = Stream.fromCollection(a).mergeJoin(Stream.fromCollection(b), n -> n, n -> n, Integer::compare, (x, y) -> x + "-" + y).toList();
+        Collections.sort(merged);
+        assertEquals(expected, merged);
+
+        // 元素个数未知时分区过大，用新的哈希种子继续划分；键全部相同的分区无法划分，直接读入内存
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(i);
+        }
+        Collections.shuffle(ids, random);
+        assertEquals(20_000, Stream.fromCollection(ids).hashJoin(Stream.fromIterator(ids.iterator()), n -> n, n -> n, (x, y) -> x - y, 50)
+                .filter(d -> d == 0).count());
+        List<Integer> hot = new ArrayList<>(Collections.nCopies(500, 7));
+        for (int i = 1000; i < 1500; i++) {
+            hot.add(i);
+        }
+        assertEquals(1001, Stream.of(7, 7, 1200).hashJoin(Stream.fromIterator(hot.iterator()), n -> n, n -> n, (x, y) -> x, 10)
+                .count());
+
+        // 第一次访问返回的流时才读取构建侧的元素
+        AtomicInteger built = new AtomicInteger(0);
+        Stream<Integer> countedBuild = Stream.fromIterator(b.iterator()).map(n -> {
+            built.incrementAndGet();
+            return n;
+        });
+        Stream<String> lazyBuild = Stream.fromCollection(a).hashJoin(countedBuild, n -> n, n -> n, (x, y) -> x + "-" + y, 100);
+        Stream<Integer> lazySemi = Stream.fromCollection(a).semiJoin(countedBuild, n -> n, n -> n);
+        assertEquals(0, built.get());
+        // 选择构建侧时不会计算延迟创建的流
+        AtomicInteger sortedRead = new AtomicInteger(0);
+        Stream<Integer> sortedBuild = Stream.fromCollection(b).map(n -> {
+            sortedRead.incrementAndGet();
+            return n;
+        }).sorted(null);
+        Stream<String> lazySorted = Stream.fromCollection(a).hashJoin(sortedBuild, n -> n, n -> n, (x, y) -> x + "-" + y);
+        assertEquals(0, sortedRead.get());
+        assertEquals(expected.size(), lazySorted.count());
+        assertEquals(b.size(), sortedRead.get());
+        assertEquals(expected.size(), lazyBuild.count());
+        assertEquals(b.size(), built.get());
+        assertEquals(a.size(), lazySemi.count() + Stream.fromCollection(a).antiJoin(Stream.fromCollection(b), n -> n, n -> n).count());
+
+        // 遍历返回的流时才读取探测侧的元素
+        AtomicInteger probed = new AtomicInteger(0);
+        Stream<Integer> counted = Stream.fromIterator(a.iterator()).map(n -> {
+            probed.incrementAndGet();
+            return n;
+        });
+        Stream<String> deferred = counted.hashJoin(Stream.fromCollection(b), n -> n, n -> n, (x, y) -> x + "-" + y, 100);
+        assertEquals(0, probed.get());
+        List<String> deferredResult = deferred.toList();
+        Collections.sort(deferredResult);
+        assertEquals(expected, deferredResult);
+        assertEquals(a.size(), probed.get());
+        assertEquals(List.of(1, 2), Stream.fromGenerator(0, n -> n + 1).hashJoin(Stream.of(1, 2, 3), n -> n, n -> n, (x, y) -> x).limit(2).toList());
+        Stream.fromGenerator(0, n -> n + 1).hashJoin(Stream.of(1, 2, 3), n -> n, n -> n, (x, y) -> x, 2);
+
+        assertThrows(IllegalArgumentException.class, () -> users.hashJoin(orders, id, id, (u, o) -> u, 0));
+        assertThrows(UncheckedIOException.class, () -> Stream.of(new Object(), new Object())
+                .hashJoin(Stream.of(new Object(), new Object(), new Object()), o -> 1, o -> 1, (x, y) -> x, 1).toList());
+    }
+
+    @Test
+    public void testJoinSpillMemory() throws Exception {
+        // 在堆大小受限的子进程中把300万个元素的探测侧分区写入临时文件
+        assertEquals("100000", runWithSmallHeap(JoinMain.class, "-Xmx96m"));
+    }
+
+    public static class JoinMain {
+        public static void main(String[] args) {
+            Integer[] build = new Integer[100_000];
+            for (int i = 0; i < build.length; i++) {
+                build[i] = i * 30;
+            }
+            Stream<Integer> probe = Stream.fromGenerator(0, n -> n + 1).limit(3_000_000).map(n -> n);
+            System.out.println(probe.hashJoin(Stream.of(build), n -> n, n -> n, (x, y) -> x, 1000).count());
+        }
+    }
+
+    /**
+     * 在堆大小受限的子进程中运行main方法，返回子进程的输出
+     */
+    private static String runWithSmallHeap(Class<?> main, String heap) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = location(main) + File.pathSeparator + location(Stream.class);
+        Process p = new ProcessBuilder(java, heap, "-cp", classpath, main.getName())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(p.waitFor(5, TimeUnit.MINUTES));
+        assertEquals(0, p.exitValue(), output);
+        return output.trim();
+    }
+
+    private static String location(Class<?> c) throws URISyntaxException {
+        return Path.of(c.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
     }
 }